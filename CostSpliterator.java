@@ -0,0 +1,200 @@
+package test8;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Spliterator over a range of outer indexes that splits on cumulative
+ *   estimated cost instead of on index count.
+ *
+ * uselessWork(i, j) costs O(i*j) so the upper half of the outer range holds
+ *   about three quarters of the work. Splitting at the cost midpoint hands
+ *   each ForkJoinPool worker a slice of about equal work.
+ *
+ * estimateSize() reports the remaining cost scaled to the element count of
+ *   the whole range. The stream framework stops splitting on that size, so
+ *   heavy slices keep splitting after light slices stop. For that reason
+ *   the spliterator is not SIZED.
+ *
+ */
+public class CostSpliterator implements Spliterator.OfInt {
+
+  private final double[] cum;   // cum[k] = cost of indexes origin .. origin+k-1
+  private final int origin;     // first index of the whole range
+  private final double scale;   // elements per unit of cost, whole range
+  private int index;            // current index
+  private final int fence;      // one past the last index
+
+/**
+ * whole range
+ * @param origin first index
+ * @param fence one past the last index
+ * @param cost estimated cost of each index
+ */
+public CostSpliterator(int origin, int fence, IntToDoubleFunction cost) {
+
+  int n = fence - origin;
+
+  cum = new double[n + 1];
+
+  for (int k = 0; k < n; k++)
+    cum[k + 1] = cum[k] + Math.max(cost.applyAsDouble(origin + k), 0.0);
+
+  this.origin = origin;
+  this.scale  = (cum[n] > 0)? n / cum[n] : 0;
+  this.index  = origin;
+  this.fence  = fence;
+}
+
+private CostSpliterator(double[] cum, int origin, double scale, int index, int fence) {
+
+  this.cum    = cum;
+  this.origin = origin;
+  this.scale  = scale;
+  this.index  = index;
+  this.fence  = fence;
+}
+
+/**
+ * split at the index where cumulative cost reaches half of what remains
+ */
+@Override
+public OfInt trySplit() {
+
+  int lo = index  - origin;
+  int hi = fence  - origin;
+
+  if  (hi - lo < 2) return null;
+
+  double target = (cum[lo] + cum[hi]) / 2;
+
+  // smallest m with cum[m] >= target, kept within (lo, hi)
+  int l = lo + 1, h = hi - 1;
+
+  while (l < h) {
+
+    int m = (l + h) >>> 1;
+
+    if  (cum[m] < target)
+        l = m + 1;
+    else
+        h = m;
+  } // end-while
+
+  CostSpliterator prefix = new CostSpliterator(cum, origin, scale, index, origin + l);
+  index = origin + l;
+
+  return prefix;
+
+} // end-method
+
+@Override
+public boolean tryAdvance(IntConsumer action) {
+
+  if  (index >= fence) return false;
+
+  action.accept(index++);
+  return true;
+
+} // end-method
+
+@Override
+public void forEachRemaining(IntConsumer action) {
+
+  int i = index;
+  int f = fence;
+
+  index = f;
+
+  for (; i < f; i++)
+    action.accept(i);
+
+} // end-method
+
+/**
+ * remaining cost expressed as elements, at least one while not empty
+ */
+@Override
+public long estimateSize() {
+
+  if  (index >= fence) return 0;
+
+  double c = cum[fence - origin] - cum[index - origin];
+
+  return (scale == 0)? fence - index : Math.max(1, (long) Math.ceil(c * scale));
+
+} // end-method
+
+@Override
+public int characteristics() {
+
+  return ORDERED | IMMUTABLE | NONNULL | DISTINCT;
+}
+
+/**
+ * outer loop numbers in a cost order, computed before the run. Index
+ *   order needs no array, the caller iterates the range.
+ * @param order index, shortest or longest
+ * @param outerLoop
+ * @param cost estimated cost of an outer loop number
+ * @return 0 .. outerLoop-1 in that order, null for index order
+ */
+static int[] order(String order, int outerLoop, IntToDoubleFunction cost) {
+
+  boolean longest;
+
+  switch (order) {
+      case "index":    return null;
+      case "shortest": longest = false; break;
+      case "longest":  longest = true;  break;
+      default: throw new IllegalArgumentException("Unknown order: " + order);
+  }
+
+  // primitive keys, longest first sorts on the negated cost
+  double[] key = new double[outerLoop];
+  int[]    o   = new int[outerLoop];
+
+  for (int i = 0; i < outerLoop; i++) {
+    double c = cost.applyAsDouble(i);
+    key[i] = (longest)? -c : c;
+    o[i]   = i;
+  }
+
+  sort(o, key);
+
+  return o;
+
+} // end-method
+
+/**
+ * bottom-up merge sort of indexes on their keys, stable: equal cost
+ *   stays in index order
+ * @param o indexes
+ * @param key of each index
+ */
+private static void sort(int[] o, double[] key) {
+
+  int n = o.length;
+  int[] tmp = new int[n];
+
+  for (int w = 1; w < n; w <<= 1) {
+    for (int lo = 0; lo < n - w; lo += w << 1) {
+
+      int mid = lo + w;
+      int hi  = Math.min(lo + (w << 1), n);
+
+      System.arraycopy(o, lo, tmp, lo, hi - lo);
+
+      int l = lo, r = mid, k = lo;
+
+      // take the right one only when strictly cheaper
+      while (l < mid && r < hi)
+        o[k++] = (key[tmp[r]] < key[tmp[l]])? tmp[r++] : tmp[l++];
+
+      while (l < mid) o[k++] = tmp[l++];
+      while (r < hi)  o[k++] = tmp[r++];
+    }
+  }
+} // end-method
+} // end-class
@@ -0,0 +1,241 @@
+package test8;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-run deadline and cooperative cancellation.
+ *
+ * Every engine asks stopped() before it forks or runs more inner work and
+ *   marks each (i, j) cell it finished with done(). Once the deadline
+ *   passes, or cancel() is called, no new work starts and the work already
+ *   running finishes. What the run produced is then a partial result and
+ *   the bitmap says which cells are in it.
+ *
+ * There is at most one run at a time, the tasks find it with current().
+ *   Every run has one, without a deadline it never expires and keeps no
+ *   bitmap, it only carries cancel() so an interrupt of the waiting
+ *   thread still stops the run. The checks then cost two volatile reads.
+ *
+ */
+public final class Deadline {
+
+  // the run in progress, null when none
+  private static volatile Deadline current;
+
+  private final long at;        // nanoTime() of the deadline
+  private final boolean timed;  // false: no deadline, only cancel()
+  private final int outerLoop;
+  private final int innerLoop;
+  private final long cells;     // outerLoop * innerLoop may pass 2^31
+  private final AtomicLongArray done; // one bit per (i, j) cell, null untimed
+
+  private volatile boolean cancelled;
+
+private Deadline(long millis, int outerLoop, int innerLoop) {
+
+  this.timed     = millis > 0;
+  this.outerLoop = outerLoop;
+  this.innerLoop = innerLoop;
+  this.cells     = (long) outerLoop * innerLoop;
+  this.done      = (timed)? new AtomicLongArray(Math.toIntExact((cells + 63) >>> 6)) : null;
+  
+  // after the bitmap, its allocation is not run time
+  this.at        = System.nanoTime() + millis * 1000000L;
+}
+
+/**
+ * start the deadline of a run
+ * @param millis from now, 0 or less for none: the run only stops on cancel()
+ * @param outerLoop
+ * @param innerLoop
+ * @return the deadline of the run
+ */
+static Deadline start(long millis, int outerLoop, int innerLoop) {
+
+  Deadline d = new Deadline(millis, outerLoop, innerLoop);
+  current = d;
+  return d;
+
+} // end-method
+
+/**
+ * the run in progress
+ * @return deadline or null before the first run
+ */
+static Deadline current() { return current; }
+
+/**
+ * should the current run stop starting work
+ */
+static boolean stopped() {
+
+  Deadline d = current;
+  return d != null && d.expired();
+}
+
+/**
+ * mark a cell of the current run finished
+ * @param i from top loop, j from bottom loop
+ */
+static void done(int i, int j) {
+
+  Deadline d = current;
+  if  (d != null && d.timed) d.mark(i, j);
+}
+
+/**
+ * did an outer iteration of the current run do any work, the engines
+ *   record only those
+ * @param i outer loop number
+ * @return true without a deadline or when a cell of i finished
+ */
+static boolean ran(int i) {
+
+  Deadline d = current;
+  return d == null || !d.timed || d.anyDone(i);
+}
+
+/**
+ * past the deadline or cancelled
+ */
+boolean expired() {
+
+  if  (cancelled) return true;
+
+  if  (timed && System.nanoTime() - at >= 0) {
+      cancelled = true;
+      return true;
+  }
+
+  return false;
+
+} // end-method
+
+/**
+ * stop the run now
+ */
+void cancel() { cancelled = true; }
+
+/**
+ * nanos left until the deadline, 0 when past it or cancelled,
+ *   Long.MAX_VALUE without a deadline
+ */
+long remainingNanos() {
+
+  if  (cancelled) return 0;
+
+  return (timed)? Math.max(at - System.nanoTime(), 0) : Long.MAX_VALUE;
+}
+
+/**
+ * is there a deadline, only then are the cells finished known
+ */
+boolean timed() { return timed; }
+
+/**
+ * set the bit of one cell
+ */
+private void mark(int i, int j) {
+
+  long cell = (long) i * innerLoop + j;
+  int  word = (int) (cell >>> 6);
+  long bit  = 1L << cell;
+
+  long prior;
+  do {
+    prior = done.get(word);
+  } while ((prior & bit) == 0 && !done.compareAndSet(word, prior, prior | bit));
+
+} // end-method
+
+/**
+ * did a cell finish
+ * @param i from top loop, j from bottom loop
+ */
+boolean isDone(int i, int j) {
+
+  long cell = (long) i * innerLoop + j;
+  return (done.get((int) (cell >>> 6)) & (1L << cell)) != 0;
+}
+
+/**
+ * did any cell of an outer loop number finish
+ * @param i from top loop
+ */
+boolean anyDone(int i) {
+
+  long first = (long) i * innerLoop;
+  long last  = first + innerLoop - 1;
+
+  for (long w = first >>> 6; w <= last >>> 6; w++) {
+
+    long bits = done.get((int) w);
+
+    // only the bits of cells first .. last
+    if  (w == first >>> 6) bits &= -1L << first;
+    if  (w == last  >>> 6) bits &= -1L >>> (63 - (last & 63));
+
+    if  (bits != 0) return true;
+  }
+
+  return false;
+
+} // end-method
+
+/**
+ * cells finished
+ */
+long completed() {
+
+  long n = 0;
+
+  for (int w = 0; w < done.length(); w++)
+    n += Long.bitCount(done.get(w));
+
+  return n;
+
+} // end-method
+
+/**
+ * sum of i + j over the finished cells, the checksum a partial run
+ *   must report
+ */
+long checksum() {
+
+  long sum = 0;
+
+  for (long cell = 0; cell < cells; cell++)
+    if  ((done.get((int) (cell >>> 6)) & (1L << cell)) != 0)
+        sum += cell / innerLoop + cell % innerLoop;
+
+  return sum;
+
+} // end-method
+
+/**
+ * outer loop numbers with every inner cell finished
+ */
+int outersCompleted() {
+
+  int n = 0;
+
+  for (int i = 0; i < outerLoop; i++) {
+
+    boolean all = true;
+
+    for (int j = 0; j < innerLoop && all; j++)
+      all = isDone(i, j);
+
+    if  (all) n++;
+  }
+
+  return n;
+
+} // end-method
+
+/**
+ * cells of the run
+ */
+long cells() { return cells; }
+
+} // end-class
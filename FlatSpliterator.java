@@ -0,0 +1,109 @@
+package test8;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Spliterator over the whole outerLoop x innerLoop iteration space.
+ *
+ * Each element is one (i, j) pair packed into a long, outer index in
+ *   the high 32 bits and inner index in the low 32 bits. Splitting halves
+ *   the linear range of pairs so there is only one level of fork/join,
+ *   no worker ever waits on a nested inner loop.
+ *
+ */
+public class FlatSpliterator implements Spliterator.OfLong {
+
+  private final int inner; // inner loop size (row length)
+  private long index;      // current linear position
+  private final long fence; // one past the last linear position
+
+/**
+ * all pairs of an outer x inner loop
+ * @param outer
+ * @param inner
+ */
+public FlatSpliterator(int outer, int inner) {
+
+  this(inner, 0, (long) outer * inner);
+}
+
+private FlatSpliterator(int inner, long origin, long fence) {
+
+  this.inner = inner;
+  this.index = origin;
+  this.fence = fence;
+}
+
+/**
+ * pack one pair
+ * @param i outer index
+ * @param j inner index
+ * @return packed pair
+ */
+public static long pack(int i, int j) { return ((long) i << 32) | (j & 0xFFFFFFFFL); }
+
+public static int outer(long pair) { return (int) (pair >>> 32); }
+public static int inner(long pair) { return (int) pair; }
+
+@Override
+public OfLong trySplit() {
+
+  long lo  = index;
+  long mid = (lo + fence) >>> 1;
+
+  if  (lo >= mid) return null;
+
+  index = mid;
+  return new FlatSpliterator(inner, lo, mid);
+
+} // end-method
+
+@Override
+public boolean tryAdvance(LongConsumer action) {
+
+  if  (index >= fence) return false;
+
+  long k = index++;
+  action.accept(pack((int) (k / inner), (int) (k % inner)));
+
+  return true;
+
+} // end-method
+
+/**
+ * walk the remaining pairs with row/column counters, no division per pair
+ */
+@Override
+public void forEachRemaining(LongConsumer action) {
+
+  long k = index;
+  long f = fence;
+
+  if  (k >= f) return;
+
+  index = f;
+
+  int i = (int) (k / inner);
+  int j = (int) (k % inner);
+
+  for (; k < f; k++) {
+
+    action.accept(pack(i, j));
+
+    if  (++j == inner) {
+        j = 0;
+        i++;
+    }
+  } // end-for
+} // end-method
+
+@Override
+public long estimateSize() { return fence - index; }
+
+@Override
+public int characteristics() {
+
+  return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT;
+}
+} // end-class
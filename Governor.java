@@ -0,0 +1,87 @@
+package test8;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides per outer iteration whether the inner loop goes parallel.
+ *
+ * A parallel inner loop only pays when the pool has idle workers to steal
+ *   it. When the outer loop already keeps every worker busy the inner
+ *   forks just queue up and their joiners wait, a sequential inner loop
+ *   is faster. The decision is taken from the live pool state:
+ *
+ *   surplus   -- this worker already holds more than SURPLUS tasks beyond
+ *                  what thieves are likely to take,
+ *   saturated -- every worker is active and tasks are still queued.
+ *
+ * Either one means sequential, otherwise parallel.
+ *
+ */
+public final class Governor {
+
+  // surplus queued tasks of this worker that mean enough local work
+  static final int SURPLUS = Integer.getInteger("nested.surplus", 3);
+
+  // decisions of the current run
+  private static final LongAdder parallel   = new LongAdder();
+  private static final LongAdder sequential = new LongAdder();
+
+private Governor() {}
+
+/**
+ * should the inner loop about to start go parallel
+ * @return true for parallel
+ */
+static boolean parallelInner() {
+
+  boolean go = !busy();
+
+  if  (go)
+      parallel.increment();
+  else
+      sequential.increment();
+
+  return go;
+
+} // end-method
+
+/**
+ * is the pool of the current thread saturated
+ */
+private static boolean busy() {
+
+  // outside a pool the inner loop goes to the common pool
+  ForkJoinPool pool = ForkJoinTask.inForkJoinPool()? ForkJoinTask.getPool()
+                                                  : ForkJoinPool.commonPool();
+
+  if  (ForkJoinTask.inForkJoinPool()
+       && ForkJoinTask.getSurplusQueuedTaskCount() > SURPLUS)
+      return true;
+
+  return pool.getActiveThreadCount() >= pool.getParallelism()
+         && pool.getQueuedTaskCount() > 0;
+
+} // end-method
+
+/**
+ * clear the counts before a run
+ */
+static void reset() {
+
+  parallel.reset();
+  sequential.reset();
+}
+
+/**
+ * inner loops the last run made parallel
+ */
+static long parallelCount() { return parallel.sum(); }
+
+/**
+ * inner loops the last run made sequential
+ */
+static long sequentialCount() { return sequential.sum(); }
+
+} // end-class
@@ -0,0 +1,70 @@
+package test8;
+
+/**
+ * Chunk size for the inner loop forks of the Tymeac async tasks.
+ *
+ * A fixed grain is used as-is. With the automatic grain (0) each forked
+ *   task is sized to run OVERHEAD_RATIO times longer than it costs to fork
+ *   one task. The fork cost is a running average measured by every outer
+ *   task around its fork loop. The work per inner index is measured by the
+ *   outer task on its own inner iteration.
+ *
+ */
+public final class GrainSize {
+
+  // automatic grain
+  static final int AUTO = 0;
+
+  // each chunk should do this many times the work of forking it
+  static final long OVERHEAD_RATIO = Long.getLong("nested.grainRatio", 50);
+
+  // running average nanos to fork one task, starts with a guess
+  private static volatile long forkNanos = 5000;
+
+private GrainSize() {}
+
+/**
+ * inner loop indexes per forked task
+ * @param grain fixed grain or AUTO
+ * @param unitNanos measured nanos of one inner index, AUTO only
+ * @param count inner loop indexes to fork
+ * @return chunk size, 1 .. count
+ */
+static int chunk(int grain, long unitNanos, int count) {
+
+  if  (count <= 1) return 1;
+
+  if  (grain != AUTO) return Math.min(Math.max(grain, 1), count);
+
+  // no measurable work per index, one chunk
+  if  (unitNanos <= 0) return count;
+
+  long c = OVERHEAD_RATIO * forkNanos / unitNanos;
+
+  return (int) Math.min(Math.max(c, 1), count);
+
+} // end-method
+
+/**
+ * fold the cost of a fork loop into the running average
+ * @param nanos elapsed in the fork loop
+ * @param forks number of forks
+ */
+static void recordForks(long nanos, int forks) {
+
+  if  (forks <= 0) return;
+
+  long prior = forkNanos;
+
+  // 1/8 weight to the newest sample, races just lose a sample
+  forkNanos = prior + ((nanos / forks) - prior) / 8;
+
+} // end-method
+
+/**
+ * current running average
+ * @return nanos to fork one task
+ */
+static long forkNanos() { return forkNanos; }
+
+} // end-class
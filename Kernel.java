@@ -0,0 +1,277 @@
+package test8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The work done for one (i, j) cell.
+ *
+ * uselessWork() was only the CPU-bound sqrt loop, so every engine was
+ *   compared on work that never touches memory, never allocates and never
+ *   blocks. A kernel is selected per run for every engine with
+ *   -Dnested.kernel=cpu|memory|alloc|blocking|file (default cpu).
+ *
+ * Every kernel does i * j units of its kind of work, so outerCost() and
+ *   the cost split hold for all of them. No kernel touches shared
+ *   mutable state.
+ *
+ *   cpu      -- sqrt loop, the original uselessWork()
+ *   memory   -- strided reads over a large shared array, one cache line
+ *                 per unit (nested.kernel.mb, default 64)
+ *   alloc    -- a short lived linked node per unit, walked and dropped
+ *   blocking -- parks the thread nested.kernel.blockNanos per unit
+ *                 (default 1), the stand-in for latency-bound work
+ *   file     -- positional reads of a local temp file, one byte per unit
+ *                 in 4 KB reads (nested.kernel.fileMb, default 16)
+ *
+ */
+public interface Kernel {
+
+/**
+ * work for one cell
+ * @param i from top loop, j from bottom loop
+ * @return result of the work
+ */
+double run(int i, int j);
+
+/**
+ * does the kernel block the thread instead of using the CPU
+ */
+default boolean blocks() { return false; }
+
+/**
+ * kernel by name
+ * @param name cpu, memory, alloc, blocking or file
+ * @return the kernel
+ */
+static Kernel named(String name) {
+
+  switch (name) {
+
+    case "cpu":      return new Cpu();
+    case "memory":   return new Memory(Integer.getInteger("nested.kernel.mb", 64));
+    case "alloc":    return new Alloc();
+    case "blocking": return new Blocking(Long.getLong("nested.kernel.blockNanos", 1));
+    case "file":     return new FileRead(Integer.getInteger("nested.kernel.fileMb", 16));
+
+    default:
+      throw new IllegalArgumentException("nested.kernel=" + name
+                                         + ", use cpu, memory, alloc, blocking or file");
+  }
+} // end-method
+
+  /**
+   * CPU-bound
+   */
+  final class Cpu implements Kernel {
+
+  @Override
+  public double run(int i, int j) {
+
+    double back = 0.0;
+    long max = (long) i * j;
+    for(int x=0; x < max; x++) {
+      back += Math.sqrt(max);
+    }
+
+    return back;
+  } // end-method
+
+  @Override
+  public String toString() { return "cpu"; }
+  } // end-inner-class
+
+  /**
+   * memory-bandwidth-bound: the array is far larger than the caches and
+   *   the stride is one cache line so every unit is a likely miss
+   */
+  final class Memory implements Kernel {
+
+    static final int STRIDE = 8; // longs per 64 byte line
+
+    private final long[] data; // read only after construction
+    private final int mask;
+
+  Memory(int megabytes) {
+
+    // power of two longs so the index wraps with a mask, in long so 2 GB
+    //   and up do not overflow, capped at the largest power of two array
+    long wanted = Math.max(megabytes, 1) * (1024L * 1024 / 8);
+    int longs = (int) Long.highestOneBit(Math.min(wanted, 1L << 30));
+
+    data = new long[longs];
+    mask = longs - 1;
+
+    for (int k = 0; k < longs; k++)
+      data[k] = k;
+  } // end-constructor
+
+  @Override
+  public double run(int i, int j) {
+
+    long back = 0;
+    long max = (long) i * j;
+
+    // start of each cell spread over the array
+    int at = (i * 0x9E3779B9 + j * 0x85EBCA6B) & mask;
+
+    for (long x = 0; x < max; x++) {
+      back += data[at];
+      at = (at + STRIDE) & mask;
+    }
+
+    return back;
+  } // end-method
+
+  @Override
+  public String toString() { return "memory"; }
+  } // end-inner-class
+
+  /**
+   * allocation-heavy: the nodes are linked so escape analysis cannot
+   *   remove them
+   */
+  final class Alloc implements Kernel {
+
+    private static final class Node {
+
+      final double value;
+      final Node next;
+
+      Node(double value, Node next) { this.value = value; this.next = next; }
+    } // end-inner-class
+
+  @Override
+  public double run(int i, int j) {
+
+    long max = (long) i * j;
+    Node head = null;
+
+    for (long x = 0; x < max; x++)
+      head = new Node(x, head);
+
+    double back = 0.0;
+
+    for (Node n = head; n != null; n = n.next)
+      back += n.value;
+
+    return back;
+  } // end-method
+
+  @Override
+  public String toString() { return "alloc"; }
+  } // end-inner-class
+
+  /**
+   * latency-bound: parks for the whole cell, timer slack makes short
+   *   parks longer than asked
+   */
+  final class Blocking implements Kernel {
+
+    private final long nanosPerUnit;
+
+  Blocking(long nanosPerUnit) {
+
+    this.nanosPerUnit = nanosPerUnit;
+  }
+
+  @Override
+  public boolean blocks() { return true; }
+
+  @Override
+  public double run(int i, int j) {
+
+    long max = (long) i * j * nanosPerUnit;
+
+    if  (max <= 0) return 0.0;
+
+    // park again on an early wakeup
+    long deadline = System.nanoTime() + max;
+
+    for (long left = max; left > 0; left = deadline - System.nanoTime())
+      LockSupport.parkNanos(left);
+
+    return max;
+  } // end-method
+
+  @Override
+  public String toString() { return "blocking"; }
+  } // end-inner-class
+
+  /**
+   * file-I/O-bound: every read is a system call, from the page cache
+   *   once the file is warm. The file is deleted at exit.
+   */
+  final class FileRead implements Kernel {
+
+    static final int BLOCK = 4096; // bytes per read
+
+    private final FileChannel channel; // positional reads are thread-safe
+    private final long blocks;
+
+    // one read buffer per thread
+    private final ThreadLocal<ByteBuffer> buffer =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BLOCK));
+
+  FileRead(int megabytes) {
+
+    try {
+      Path file = Files.createTempFile("nested-kernel", ".dat");
+      file.toFile().deleteOnExit();
+
+      byte[] fill = new byte[BLOCK];
+      blocks = Math.max(megabytes, 1) * (1024L * 1024 / BLOCK);
+
+      for (int k = 0; k < BLOCK; k++)
+        fill[k] = (byte) k;
+
+      try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        for (long b = 0; b < blocks; b++)
+          out.write(ByteBuffer.wrap(fill));
+      }
+
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("file kernel setup failed", e);
+    }
+  } // end-constructor
+
+  @Override
+  public boolean blocks() { return true; }
+
+  @Override
+  public double run(int i, int j) {
+
+    long max = (long) i * j;
+    long back = 0;
+    ByteBuffer buf = buffer.get();
+
+    // start of each cell spread over the file
+    long block = ((i * 0x9E3779B9L + j * 0x85EBCA6BL) & Long.MAX_VALUE) % blocks;
+
+    try {
+      for (long left = max; left > 0; left -= BLOCK) {
+
+        buf.clear().limit((int) Math.min(left, BLOCK));
+        back += channel.read(buf, block * BLOCK);
+        block = (block + 1) % blocks;
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("file kernel read failed", e);
+    }
+
+    return back;
+  } // end-method
+
+  @Override
+  public String toString() { return "file"; }
+  } // end-inner-class
+} // end-interface
@@ -0,0 +1,155 @@
+package test8;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ *
+ * Values below SUB nanos have a bucket each. Above that every power of
+ *   two range is split into SUB / 2 linear buckets, so any recorded value
+ *   is reported within 1 / 64 (about 1.6%) of itself, from nanos to
+ *   centuries, in a fixed array of counts.
+ *
+ * record() is lock-free, any thread may record while the run is going.
+ *   The outer loop number of the largest value is kept so the tail can be
+ *   traced back to the O(i*j) skew.
+ *
+ */
+public final class LatencyHistogram {
+
+  static final int SUB_BITS = 7;
+  static final int SUB      = 1 << SUB_BITS; // linear buckets below this
+  static final int HALF     = SUB >> 1;      // buckets per power of two above
+  static final int BUCKETS  = (63 - SUB_BITS + 1) * HALF + SUB;
+
+  private final String name;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final LongAdder sum   = new LongAdder(); // of the values, for the mean
+
+  // largest value and its outer loop number, updated under the lock
+  private volatile long max;
+  private int maxOuter = -1;
+
+/**
+ * @param name for the report
+ */
+public LatencyHistogram(String name) {
+
+  this.name = name;
+}
+
+/**
+ * record one latency
+ * @param outer outer loop number
+ * @param nanos latency, negative counts as 0
+ */
+void record(int outer, long nanos) {
+
+  long v = Math.max(nanos, 0);
+
+  counts.incrementAndGet(index(v));
+  total.increment();
+  sum.add(v);
+
+  if  (v > max)
+      synchronized (this) {
+        if  (v > max) {
+            max = v;
+            maxOuter = outer;
+        }
+      }
+} // end-method
+
+/**
+ * bucket of a value
+ */
+static int index(long v) {
+
+  if  (v < SUB) return (int) v;
+
+  // v >>> shift is in HALF .. SUB-1
+  int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+
+  return shift * HALF + (int) (v >>> shift);
+
+} // end-method
+
+/**
+ * highest value of a bucket
+ */
+static long highest(int index) {
+
+  if  (index < SUB) return index;
+
+  int  shift = index / HALF - 1;
+  long m     = index % HALF + HALF;
+
+  return ((m + 1) << shift) - 1;
+
+} // end-method
+
+/**
+ * value at a percentile, the highest value of its bucket but no more
+ *   than the max
+ * @param p 0 .. 100
+ * @return nanos, 0 when empty
+ */
+long percentile(double p) {
+
+  long n = total.sum();
+
+  if  (n == 0) return 0;
+
+  long target = Math.max((long) Math.ceil(p / 100 * n), 1);
+  long seen = 0;
+
+  for (int k = 0; k < BUCKETS; k++) {
+
+    seen += counts.get(k);
+
+    if  (seen >= target) return Math.min(highest(k), max);
+  }
+
+  return max;
+
+} // end-method
+
+long count()    { return total.sum(); }
+double mean()   { long n = total.sum(); return (n == 0)? 0 : (double) sum.sum() / n; }
+long max()      { return max; }
+synchronized int maxOuter() { return maxOuter; }
+
+/**
+ * clear before a run
+ */
+synchronized void reset() {
+
+  for (int k = 0; k < BUCKETS; k++)
+    counts.set(k, 0);
+
+  total.reset();
+  sum.reset();
+  max = 0;
+  maxOuter = -1;
+
+} // end-method
+
+/**
+ * print count, mean, p50, p99, p99.9 and max in milliseconds
+ * @param out
+ */
+public void report(PrintStream out) {
+
+  if  (count() == 0) {
+      out.println(name + ": no samples");
+      return;
+  }
+
+  out.printf("%s (ms): n=%d mean=%.3f p50=%.3f p99=%.3f p99.9=%.3f max=%.3f (outer %d)\n",
+             name, count(), mean() / 1e6, percentile(50) / 1e6, percentile(99) / 1e6,
+             percentile(99.9) / 1e6, max() / 1e6, maxOuter());
+} // end-method
+} // end-class
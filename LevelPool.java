@@ -0,0 +1,112 @@
+package test8;
+
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A dedicated ForkJoinPool for one level of the nested loop.
+ *
+ * The workers are named prefix + number so a profiler or the
+ *   ThreadSampler tells the levels apart. The pool counts the threads it
+ *   started, the most that were alive at once, and the tasks of its level
+ *   with their time, so the two levels of type_run 8 can be compared.
+ *
+ * At most maxSize workers are alive. A worker that blocks past that
+ *   blocks without a new thread.
+ *
+ */
+public final class LevelPool {
+
+  private final String prefix;
+  private final ForkJoinPool pool;
+
+  private final AtomicInteger nbr  = new AtomicInteger(); // threads started
+  private final AtomicInteger live = new AtomicInteger();
+  private final AtomicInteger peak = new AtomicInteger();
+
+  private final LongAdder tasks = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+
+/**
+ * @param prefix of the worker names
+ * @param parallelism target parallelism
+ * @param maxSize most live workers, parallelism or more
+ */
+public LevelPool(String prefix, int parallelism, int maxSize) {
+
+  this.prefix = prefix;
+
+  pool = new ForkJoinPool(parallelism, Worker::new, null, false, 0,
+                          Math.max(maxSize, parallelism), 1,
+                          p -> true, // saturated: block uncompensated
+                          60, TimeUnit.SECONDS);
+} // end-constructor
+
+  /**
+   * named worker that keeps the live count
+   */
+  private final class Worker extends ForkJoinWorkerThread {
+
+    Worker(ForkJoinPool pool) {
+
+      super(pool);
+      setName(prefix + nbr.getAndIncrement());
+    }
+
+  @Override
+  protected void onStart() {
+
+    super.onStart();
+    peak.accumulateAndGet(live.incrementAndGet(), Math::max);
+  }
+
+  @Override
+  protected void onTermination(Throwable exception) {
+
+    live.decrementAndGet();
+    super.onTermination(exception);
+  }
+  } // end-inner-class
+
+/**
+ * the pool to submit to
+ */
+ForkJoinPool pool() { return pool; }
+
+/**
+ * one task of this level finished
+ * @param took nanos of the task
+ */
+void timed(long took) {
+
+  tasks.increment();
+  nanos.add(took);
+}
+
+int threadsStarted() { return nbr.get(); }
+int peakThreads()    { return peak.get(); }
+
+/**
+ * no new tasks, the workers end when idle
+ */
+void shutdown() { pool.shutdown(); }
+
+/**
+ * print threads started, peak live threads, steals and task time
+ * @param out
+ */
+public void report(PrintStream out) {
+
+  long n = tasks.sum();
+
+  out.printf("%-14s parallelism: %d threads started: %d peak live: %d steals: %d"
+             + " tasks: %d time: %.6f s (mean %.6f s)\n",
+             prefix, pool.getParallelism(), threadsStarted(), peakThreads(),
+             pool.getStealCount(), n, nanos.sum() / 1e9,
+             (n == 0)? 0 : nanos.sum() / 1e9 / n);
+} // end-method
+} // end-class
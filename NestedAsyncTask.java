@@ -17,19 +17,32 @@ public class NestedAsyncTask extends Task {
    */
   private class PassToJ {
   
-    private int i, j;
+    private int i, j, jEnd; // outer loop, inner loop range j .. jEnd-1
     private CountDownLatch latch;
+    private long submitted; // nanoTime() of the outer asyncRequest()
+    private long forked = System.nanoTime(); 
+    private PartialSum[] sums; // REDUCE: outer loop slots, else null
+    private PartialSum sum;    // REDUCE: result of this chunk
     
-  protected PassToJ (int i, int j, CountDownLatch latch) {
+  protected PassToJ (int i, int j, int jEnd, long submitted, PartialSum[] sums, CountDownLatch latch) {
     
     this.i  = i;
     this.j  = j;
+    this.jEnd  = jEnd;
+    this.submitted = submitted;
+    this.sums = sums;
     this.latch = latch;
   }
   
   protected CountDownLatch  getLatch()  { return latch; }
   protected int             getI()      { return i;  }
   protected int             getJ()      { return j;  }
+  protected int             getJEnd()   { return jEnd;  }
+  protected long            getSubmitted() { return submitted;  }
+  protected long            getForked() { return forked;  }
+  protected PartialSum[]    getSums()   { return sums;  }
+  protected PartialSum      getSum()    { return sum;  }
+  protected void            setSum(PartialSum s) { sum = s;  }
   
   } // end-inner-class
     
@@ -40,6 +53,8 @@ public class NestedAsyncTask extends Task {
 @Override
 public Object compute() {   
   
+  TymeacEngine.taskStarted();
+  
   Object obj = getInput();
   
   if  (obj == null) {       
@@ -48,15 +63,45 @@ public Object compute() {
     return null;
   }
   
+  // PACKED payloads
+  if  (obj instanceof PackedArena.Cell)  return packedChunk((PackedArena.Cell) obj);
+  if  (obj instanceof PackedArena.Outer) return packedOuter((PackedArena.Outer) obj);
+  
   // When a forked object
    if  (obj instanceof PassToJ) {
      
        PassToJ toJ = (PassToJ) obj;
        int     myI = toJ.getI();
        int     myJ = toJ.getJ();
+       int     end = toJ.getJEnd();
+       
+       NestedInnerEvent e = new NestedInnerEvent();
+       e.begin();
+       long began = System.nanoTime();
        
-       // do actual work in lower nested loop
-       NestedParallel.uselessWork(myI, myJ);
+       // REDUCE: every chunk returns its own sum to complete()
+       if  (toJ.getSums() != null) {
+         
+           PartialSum sum = new PartialSum();
+         
+           for (int j = myJ; j < end && !Deadline.stopped(); j++) {
+             sum.add(myI, j, NestedParallel.work(myI, j));
+             Deadline.done(myI, j);
+           }
+           
+           toJ.setSum(sum);
+           e.done("tymeac", myI, myJ, end - myJ, toJ.getForked(), began);
+           
+           return toJ;
+       }
+       
+       // do actual work in lower nested loop, one chunk of j, until stopped
+       for (int j = myJ; j < end && !Deadline.stopped(); j++) {
+         NestedParallel.uselessWork(myI, j);
+         Deadline.done(myI, j);
+       }
+       
+       e.done("tymeac", myI, myJ, end - myJ, toJ.getForked(), began);
        
        // Only need one for complete()
        if  (myJ == 0) return toJ;
@@ -71,30 +116,186 @@ public Object compute() {
   
   PassClass myPass = (PassClass) obj;
   
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
   int             local_I = myPass.getI(); // outer loop number
   int             local_j = myPass.getJ(); // total inner loop tasks 
   CountDownLatch  latch   = myPass.getLatch();
+  long            submitted = myPass.getSubmitted();
+  PartialSum[]    sums    = myPass.getSums(); 
+  int             grain   = myPass.getGrain(); // j per fork
   
   int nbr_forks = local_j - 1; // will do last computation in this thread  
+  long unit = 0; // nanos per j, automatic grain only
+  
+  // automatic grain: do last one first and time it, i*j grows with j
+  //   so the average over the inner loop is about half of it
+  PassToJ local = new PassToJ(local_I, nbr_forks, local_j, submitted, sums, latch);
+  
+  if  (grain == GrainSize.AUTO) {
+    
+      long t0 = System.nanoTime();
+      lastOne(local);
+      unit = (System.nanoTime() - t0) / 2;
+  }
+  
+  int chunk = GrainSize.chunk(grain, unit, nbr_forks);
+  int forks = 0;
+  long f0 = System.nanoTime();
       
-  // fork nested tasks
-  for (int j = 0; j < nbr_forks; j++) {
+  // fork nested tasks until stopped
+  for (int j = 0; j < nbr_forks && !Deadline.stopped(); j += chunk) {
     
     // create each task, except last to do the lower level work
-    if  (fork(new PassToJ(local_I, j, latch)) != 0) return null;
+    if  (fork(new PassToJ(local_I, j, Math.min(j + chunk, nbr_forks), submitted, sums, latch)) != 0) return null;
+    forks++;
     
   } // end-for  
   
+  GrainSize.recordForks(System.nanoTime() - f0, forks);
+  
   // do last one here
-  NestedParallel.uselessWork(local_I, nbr_forks);
+  if  (grain != GrainSize.AUTO)
+      lastOne(local);
   
   // thread info for outer loop
   NestedParallel.setThreadData(local_I);
   
+  e.done("tymeac", "compute", local_I, submitted, began);
+  
+  // REDUCE: the last one's sum goes to complete() too
+  //   no forks (stopped): complete() needs one
+  return (sums != null || forks == 0)? local : null;
+  
+} // end-method
+
+/**
+ * PACKED outer task: same as for a PassClass, forks preallocated cells
+ * @param outer
+ * @return null, a cell when stopped before the first fork
+ */
+private Object packedOuter(PackedArena.Outer outer) {
+  
+  PackedArena a = PackedArena.current();
+  
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  int i = outer.i;
+  int nbr_forks = a.innerLoop - 1; // will do last computation in this thread  
+  long unit = 0; // nanos per j, automatic grain only
+  
+  if  (a.grain == GrainSize.AUTO) {
+    
+      long t0 = System.nanoTime();
+      packedLastOne(i, nbr_forks);
+      unit = (System.nanoTime() - t0) / 2;
+  }
+  
+  int chunk = GrainSize.chunk(a.grain, unit, nbr_forks);
+  a.chunks[i] = chunk;
+  
+  // fork nested tasks until stopped, the key says which chunk
+  int f = 0;
+  long f0 = System.nanoTime();
+  
+  for (int j = 0; j < nbr_forks && !Deadline.stopped(); j += chunk) {
+    
+    PackedArena.Cell c = a.cell(i, f++);
+    c.key = FlatSpliterator.pack(i, j);
+    c.forked = System.nanoTime();
+    
+    if  (fork(c) != 0) return null;
+    
+  } // end-for  
+  
+  GrainSize.recordForks(System.nanoTime() - f0, f);
+  
+  // do last one here
+  if  (a.grain != GrainSize.AUTO)
+      packedLastOne(i, nbr_forks);
+  
+  // thread info for outer loop
+  NestedParallel.setThreadData(i);
+  
+  e.done("tymeac", "compute", i, outer.submitted, began);
+  
+  // no forks (stopped): complete() needs one
+  if  (f == 0) {
+    
+      PackedArena.Cell c = a.cell(i, 0);
+      c.key = FlatSpliterator.pack(i, 0);
+      return c;
+  }
+  
   return null;
   
 } // end-method
 
+/**
+ * PACKED forked task: one chunk of j
+ * @param c 
+ * @return the cell of the first chunk for complete(), else null
+ */
+private static Object packedChunk(PackedArena.Cell c) {
+  
+  PackedArena a = PackedArena.current();
+  
+  int i   = FlatSpliterator.outer(c.key);
+  int j   = FlatSpliterator.inner(c.key);
+  int end = a.chunkEnd(i, j);
+  
+  NestedInnerEvent e = new NestedInnerEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  for (int k = j; k < end && !Deadline.stopped(); k++) {
+    NestedParallel.uselessWork(i, k);
+    Deadline.done(i, k);
+  }
+  
+  e.done("tymeac", i, j, end - j, c.forked, began);
+  
+  // Only need one for complete()
+  return (j == 0)? c : null;
+  
+} // end-method
+
+/**
+ * PACKED: the last inner loop index, done by the outer task itself
+ */
+private static void packedLastOne(int i, int j) {
+  
+  if  (Deadline.stopped()) return;
+  
+  NestedParallel.uselessWork(i, j);
+  Deadline.done(i, j);
+  
+} // end-method
+
+/**
+ * the last inner loop index, done by the outer task itself
+ * @param local 
+ */
+private static void lastOne(PassToJ local) {
+  
+  if  (Deadline.stopped()) return;
+  
+  if  (local.getSums() == null)
+      NestedParallel.uselessWork(local.getI(), local.getJ());
+  else {
+      PartialSum sum = new PartialSum();
+      sum.add(local.getI(), local.getJ(), NestedParallel.work(local.getI(), local.getJ()));
+      local.setSum(sum);
+  }
+  
+  Deadline.done(local.getI(), local.getJ());
+  
+} // end-method
+
 /**
  * all tasks have completed, tell initiator this async request completed
  */
@@ -102,15 +303,53 @@ public Object compute() {
 public Object complete() {   
   
   Object[] obj = getOutput();
+  
+  // PACKED: say work done for this async request
+  if  (obj[0] instanceof PackedArena.Cell) {
+    
+      PackedArena a = PackedArena.current();
+      int i = FlatSpliterator.outer(((PackedArena.Cell) obj[0]).key);
+      
+      NestedOuterEvent e = new NestedOuterEvent();
+      e.begin();
+      long began = System.nanoTime();
+      
+      // record only an outer iteration that did work
+      if  (Deadline.ran(i)) NestedParallel.outerDone(i, a.outers[i].submitted);
+      NestedParallel.requestDone();
+      a.latch.countDown();
+      
+      e.done("tymeac", "complete", i, a.outers[i].submitted, began);
+      return null;
+  }
     
   if (!(obj[0] instanceof PassToJ)) 
     throw new IllegalArgumentException("AsyncI.complete(): Expecting Class PassToJ");
   
   PassToJ myPass = (PassToJ) obj[0];
   
-  // say work done for this async request
+  // REDUCE: merge every chunk into the slot of this outer loop
+  if  (myPass.getSums() != null) {
+    
+      PartialSum sum = new PartialSum();
+      
+      for (Object o : obj)
+        sum.merge(((PassToJ) o).getSum());
+      
+      myPass.getSums()[myPass.getI()] = sum;
+  }
+  
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  // say work done for this async request, record it when it did work
+  if  (Deadline.ran(myPass.getI())) NestedParallel.outerDone(myPass.getI(), myPass.getSubmitted());
+  NestedParallel.requestDone();
   myPass.getLatch().countDown();
   
+  e.done("tymeac", "complete", myPass.getI(), myPass.getSubmitted(), began);
+  
   return null;  
   
 } // end-method
@@ -0,0 +1,323 @@
+package test8;
+
+/*
+ *
+ * Benchmark harness for the nested loop engines.
+ *
+ * NestedParallel and WaitMParallelLoops time a single run with one
+ *   System.nanoTime() pair. That number includes JIT compilation, class
+ *   loading and whatever else the JVM is doing at startup so it is not
+ *   possible to tell a real scaling difference from noise.
+ *
+ * This harness works the way JMH does:
+ *   every parameter combination runs in fresh JVMs (forks),
+ *   each fork runs warmup iterations that are discarded and then
+ *   measured iterations that are reported as mean, error, min and max.
+ *
+ * Options (system properties, comma separated lists are crossed):
+ *  bench.engines     -- seq, para, tymeac, flat, virtual, managed, governed, split,
+ *                       completer, waitm, flow (default all)
+ *  bench.outerLoop   -- outer loop iterations   (default 200)
+ *  bench.innerLoop   -- inner loop iterations   (default 2000)
+ *  bench.parallelism -- FJPool/Tymeac parallelism (default 8)
+ *  bench.forks       -- JVMs per combination    (default 2)
+ *  bench.warmup      -- warmup iterations per fork  (default 3)
+ *  bench.iterations  -- measured iterations per fork (default 5)
+ *  bench.jvmArgs     -- extra JVM options for each fork, space separated
+ *
+ * For example:
+ *   java -cp .:TymeacDSELite.jar -Dbench.engines=seq,para
+ *        -Dbench.parallelism=2,4,8 test8.NestedBenchmark
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forked, warmed-up benchmark of each engine
+ *
+ */
+public class NestedBenchmark {
+
+  static final long NPS = (1000L * 1000 * 1000); // for timing
+
+  // prefix of the one line each child iteration reports
+  static final String RESULT = "RESULT";
+
+  static final String[] engines     = list("bench.engines", "seq,para,tymeac,flat,virtual,managed,governed,split,completer,waitm,flow");
+  static final String[] outers      = list("bench.outerLoop",   "200");
+  static final String[] inners      = list("bench.innerLoop",   "2000");
+  static final String[] parallels   = list("bench.parallelism", "8");
+
+  static final int forks      = Integer.getInteger("bench.forks", 2);
+  static final int warmup     = Integer.getInteger("bench.warmup", 3);
+  static final int iterations = Integer.getInteger("bench.iterations", 5);
+
+  // Student t quantile for a 99.9% two-sided interval, 1 .. 30 degrees of freedom
+  private static final double[] T999 = {
+      636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437,  4.318,  4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819,  3.792,  3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646 };
+
+/**
+ * Start of application
+ * @param args -child engine when running as a fork
+ */
+public static void main(String[] args) throws Exception {
+
+  if  (args.length == 2 && args[0].equals("-child")) {
+
+      child(args[1]);
+      stopServer(args[1]);
+      return;
+  }
+
+  System.out.printf("%-10s %8s %8s %6s %5s %14s %14s %12s %12s\n",
+                    "Engine", "outer", "inner", "par", "cnt",
+                    "mean(s)", "error(s)", "min(s)", "max(s)");
+
+  for (String engine : engines)
+    for (String outer : outers)
+      for (String inner : inners)
+        for (String par : parallels) {
+
+          List<String> props = Arrays.asList(
+              "-Dnested.outerLoop="   + outer,
+              "-Dnested.innerLoop="   + inner,
+              "-Dnested.parallelism=" + par,
+              "-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + par,
+              "-Dbench.warmup="       + warmup,
+              "-Dbench.iterations="   + iterations);
+
+          List<Double> samples = new ArrayList<>();
+
+          for (int f = 0; f < forks; f++)
+            for (String line : launch(NestedBenchmark.class, props, "-child", engine))
+              if  (line.startsWith(RESULT))
+                  samples.add(Double.parseDouble(line.split(" ")[1]) / NPS);
+
+          report(engine, outer, inner, par, samples);
+
+        } // end-for
+} // end-method
+
+/**
+ * Run within the forked JVM: warmup then measure
+ * @param engine
+ */
+private static void child(String engine) {
+
+  for (int w = 0; w < warmup; w++)
+    System.out.printf("# warmup %d: %5.9f\n", w, (double) runOnce(engine) / NPS);
+
+  for (int m = 0; m < iterations; m++) {
+
+    long nanos = runOnce(engine);
+    System.out.println(RESULT + " " + nanos + " " + checksum(engine));
+  }
+} // end-method
+
+/**
+ * run an engine once
+ * @param engine
+ * @return elapsed nanos
+ */
+static long runOnce(String engine) {
+
+  switch (engine) {
+
+    case "seq":    return nested(NestedParallel.seq_run);
+    case "para":   return nested(NestedParallel.para_run);
+    case "tymeac": return nested(NestedParallel.ty_run);
+    case "flat":   return nested(NestedParallel.flat_run);
+    case "virtual": return nested(NestedParallel.vt_run);
+    case "managed": return nested(NestedParallel.mb_run);
+    case "governed": return nested(NestedParallel.gov_run);
+    case "split":  return nested(NestedParallel.split_run);
+    case "completer": return nested(NestedParallel.cc_run);
+
+    case "waitm":
+      new WaitMParallelLoops().tymeacLoops();
+      return WaitMParallelLoops.end - WaitMParallelLoops.start;
+
+    case "flow":
+      new WaitMParallelLoops().flowLoops();
+      return WaitMParallelLoops.end - WaitMParallelLoops.start;
+
+    default:
+      throw new IllegalArgumentException("Unknown engine: " + engine);
+  }
+} // end-method
+
+/**
+ * shut down the Tymeac server an engine ran on, the JVM then ends on
+ *   its own. The other engines leave no thread running.
+ * @param engine
+ */
+static void stopServer(String engine) {
+
+  if  (engine.equals("waitm") || engine.equals("flow"))
+      WaitMParallelLoops.stopServer();
+  else
+      NestedParallel.stopServer();
+} // end-method
+
+/**
+ * run a NestedParallel engine once
+ * @param type
+ * @return elapsed nanos
+ */
+private static long nested(int type) {
+
+  new NestedParallel().runLoops(type);
+  return NestedParallel.end - NestedParallel.start;
+} // end-method
+
+/**
+ * proof all runs did the same work
+ * @param engine
+ * @return checksum of last run
+ */
+static long checksum(String engine) {
+
+  return (engine.equals("waitm") || engine.equals("flow"))? WaitMParallelLoops.parCount
+                               : NestedParallel.checksum();
+} // end-method
+
+/**
+ * Start a new JVM with the current classpath, wait for it to finish
+ * @param main class to run
+ * @param props -D options for the new JVM
+ * @param args for main
+ * @return lines of stdout
+ */
+static List<String> launch(Class<?> main, List<String> props, String... args)
+    throws IOException, InterruptedException {
+
+  List<String> cmd = command(main, props, args);
+
+  Process p = new ProcessBuilder(cmd)
+                  .redirectError(ProcessBuilder.Redirect.INHERIT)
+                  .start();
+
+  List<String> lines = new ArrayList<>();
+
+  try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+
+    String line;
+    while ((line = in.readLine()) != null)
+      lines.add(line);
+  }
+
+  int rc = p.waitFor();
+  if  (rc != 0)
+      throw new IOException("fork " + cmd + " ended with RC=" + rc);
+
+  return lines;
+
+} // end-method
+
+/**
+ * Start a new JVM with the current classpath, do not wait. Its output
+ *   goes to ours.
+ * @param main class to run
+ * @param props -D options for the new JVM
+ * @param args for main
+ * @return the process
+ */
+static Process start(Class<?> main, List<String> props, String... args) throws IOException {
+
+  return new ProcessBuilder(command(main, props, args)).inheritIO().start();
+} // end-method
+
+/**
+ * java command line for a new JVM with the current classpath
+ */
+private static List<String> command(Class<?> main, List<String> props, String... args) {
+
+  List<String> cmd = new ArrayList<>();
+
+  cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+
+  String extra = System.getProperty("bench.jvmArgs", "").trim();
+  if  (!extra.isEmpty())
+      cmd.addAll(Arrays.asList(extra.split("\\s+")));
+
+  cmd.add("-cp");
+  cmd.add(System.getProperty("java.class.path"));
+  cmd.addAll(props);
+  cmd.add(main.getName());
+  cmd.addAll(Arrays.asList(args));
+
+  return cmd;
+
+} // end-method
+
+/**
+ * print one line of results. error is the 99.9% confidence half-width
+ */
+private static void report(String engine, String outer, String inner, String par,
+                           List<Double> samples) {
+
+  int n = samples.size();
+  
+  if  (n == 0) {
+      System.out.printf("%-10s %8s %8s %6s %5d no results, see fork output\n",
+                        engine, outer, inner, par, n);
+      return;
+  }
+  
+  double sum = 0, min = Double.MAX_VALUE, max = 0;
+
+  for (double d : samples) {
+    sum += d;
+    min = Math.min(min, d);
+    max = Math.max(max, d);
+  }
+
+  double mean = sum / n;
+  double var  = 0;
+
+  for (double d : samples)
+    var += (d - mean) * (d - mean);
+
+  double error = (n > 1)? studentT999(n - 1) * Math.sqrt(var / (n - 1)) / Math.sqrt(n) : Double.NaN;
+
+  System.out.printf("%-10s %8s %8s %6s %5d %14.6f %14.6f %12.6f %12.6f\n",
+                    engine, outer, inner, par, n, mean, error, min, max);
+} // end-method
+
+/**
+ * Student t quantile of a 99.9% confidence interval, as JMH uses, not
+ *   the normal 3.291 which is too small for a few samples. Past the table
+ *   the Cornish-Fisher expansion in 1/df, within 0.001 there.
+ * @param df degrees of freedom, samples - 1
+ */
+static double studentT999(int df) {
+
+  if  (df <= T999.length) return T999[df - 1];
+
+  double z = 3.290527; // normal quantile of 0.9995
+  double z2 = z * z, z3 = z2 * z, z5 = z3 * z2, z7 = z5 * z2, z9 = z7 * z2;
+  double d  = df;
+
+  return z + (z3 + z) / (4 * d)
+           + (5 * z5 + 16 * z3 + 3 * z) / (96 * d * d)
+           + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * d * d * d)
+           + (79 * z9 + 776 * z7 + 1482 * z5 - 1920 * z3 - 945 * z) / (92160 * d * d * d * d);
+
+} // end-method
+
+/**
+ * comma separated system property
+ */
+static String[] list(String name, String def) {
+
+  return System.getProperty(name, def).split(",");
+} // end-method
+} // end-class
@@ -0,0 +1,221 @@
+package test8;
+
+/*
+ *
+ * Scatter-gather of the Tymeac engine across worker JVMs on one box.
+ *
+ * The coordinator starts N worker JVMs and listens on a loopback socket.
+ *   Each worker starts its own Tymeac server, connects, and is sent the
+ *   outer loop numbers it owns. Outer loop number i goes to worker
+ *   i % N. Striping balances the load, since the cost of an outer
+ *   iteration grows with i. A worker submits its outer loop numbers
+ *   through NestedParallel.runOuters(), the same NestedAsyncTask logic
+ *   as type_run 3. It sends back its checksum and compute time, and the
+ *   coordinator adds the checksums to the one total.
+ *
+ * For each worker count it reports:
+ *   startup  -- launch until every worker is connected (JVM + Tymeac start)
+ *   run      -- first assignment sent until the last result is in
+ *   slowest  -- compute time of the slowest worker
+ *   overhead -- run - slowest, the cost of scatter and gather
+ *
+ * Options (system properties):
+ *  cluster.workers  -- worker JVM counts to run, comma separated (default 1,2,4)
+ *  cluster.timeout  -- seconds to wait for the workers to connect (default 60)
+ *  nested.*         -- passed on to every worker (outerLoop, innerLoop,
+ *                      parallelism per worker, grain, kernel ...). Each
+ *                      worker writes its own nested.journal, the file
+ *                      name + ".N-W" for worker W of N
+ *  bench.jvmArgs    -- extra JVM options for each worker, space separated
+ *
+ * For example:
+ *   java -cp .:TymeacDSELite.jar -Dcluster.workers=1,2,3,4
+ *        -Dnested.parallelism=2 test8.NestedCluster
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator and worker JVMs over loopback sockets
+ *
+ */
+public class NestedCluster {
+
+  static final long NPS = (1000L * 1000 * 1000); // for timing
+
+  static final String[] workers = NestedBenchmark.list("cluster.workers", "1,2,4");
+  static final int timeout = Integer.getInteger("cluster.timeout", 60);
+
+/**
+ * Start of application
+ * @param args -worker port id when running as a worker
+ */
+public static void main(String[] args) throws Exception {
+
+  if  (args.length == 3 && args[0].equals("-worker")) {
+
+      worker(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+      NestedParallel.stopServer();
+      return;
+  }
+
+  int outerLoop = NestedParallel.outerLoop;
+  int innerLoop = NestedParallel.innerLoop;
+
+  // sum of i + j over every cell
+  long expected = (long) innerLoop * outerLoop * (outerLoop - 1) / 2
+                + (long) outerLoop * innerLoop * (innerLoop - 1) / 2;
+
+  System.out.println("outerLoop: " + outerLoop + " innerLoop: " + innerLoop
+                     + " parallelism per worker: " + NestedParallel.parallelism);
+  System.out.printf("%7s %11s %11s %11s %11s %8s %s\n",
+                    "workers", "startup(s)", "run(s)", "slowest(s)", "overhead(s)",
+                    "speedup", "checksum");
+
+  double single = 0;
+
+  for (String w : workers) {
+
+    long[] r = coordinate(Integer.parseInt(w.trim()), outerLoop);
+
+    double run = (double) r[1] / NPS;
+
+    if  (single == 0) single = run;
+
+    System.out.printf("%7s %11.3f %11.3f %11.3f %11.3f %8.2f %d %s\n",
+                      w.trim(), (double) r[0] / NPS, run, (double) r[2] / NPS,
+                      (double) (r[1] - r[2]) / NPS, single / run, r[3],
+                      (r[3] == expected)? "ok" : "expected " + expected);
+  }
+} // end-method
+
+/**
+ * one scatter-gather over n workers
+ * @param n worker JVMs
+ * @param outerLoop
+ * @return startup nanos, run nanos, slowest worker nanos, checksum
+ */
+private static long[] coordinate(int n, int outerLoop) throws IOException, InterruptedException {
+
+  List<Process> procs = new ArrayList<>();
+  Socket[] socks = new Socket[n];
+
+  try (ServerSocket server = new ServerSocket(0, n, InetAddress.getLoopbackAddress())) {
+
+    server.setSoTimeout(timeout * 1000);
+
+    long t0 = System.nanoTime();
+
+    for (int w = 0; w < n; w++)
+      procs.add(NestedBenchmark.start(NestedCluster.class, nestedProps(n, w),
+                                      "-worker", "" + server.getLocalPort(), "" + w));
+
+    // each worker says who it is once its server is up
+    for (int c = 0; c < n; c++) {
+
+      Socket sock = server.accept();
+      socks[new DataInputStream(sock.getInputStream()).readInt()] = sock;
+    }
+
+    long startup = System.nanoTime() - t0;
+    long s0 = System.nanoTime();
+
+    // scatter: outer loop number i to worker i % n
+    for (int w = 0; w < n; w++) {
+
+      DataOutputStream out = new DataOutputStream(socks[w].getOutputStream());
+      int count = (outerLoop - w + n - 1) / n;
+
+      out.writeInt(count);
+      for (int i = w; i < outerLoop; i += n)
+        out.writeInt(i);
+      out.flush();
+    }
+
+    // gather
+    long checksum = 0, slowest = 0;
+
+    for (int w = 0; w < n; w++) {
+
+      DataInputStream in = new DataInputStream(socks[w].getInputStream());
+
+      checksum += in.readLong();
+      slowest = Math.max(slowest, in.readLong());
+    }
+
+    long run = System.nanoTime() - s0;
+
+    return new long[] {startup, run, slowest, checksum};
+  }
+  finally {
+    for (Socket sock : socks)
+      if  (sock != null) sock.close();
+
+    for (Process p : procs)
+      if  (!p.waitFor(timeout, TimeUnit.SECONDS))
+          p.destroyForcibly();
+  }
+} // end-method
+
+/**
+ * the nested.* options of this JVM, for one worker. The journal is 
+ *   per worker, workers writing one file would overwrite each other.
+ * @param n worker JVMs
+ * @param w worker number
+ */
+private static List<String> nestedProps(int n, int w) {
+
+  List<String> props = new ArrayList<>();
+
+  for (Map.Entry<Object, Object> e : System.getProperties().entrySet())
+    if  (e.getKey().toString().equals("nested.journal"))
+        props.add("-Dnested.journal=" + e.getValue() + "." + n + "-" + w);
+
+    else if (e.getKey().toString().startsWith("nested."))
+        props.add("-D" + e.getKey() + "=" + e.getValue());
+
+  return props;
+
+} // end-method
+
+/**
+ * Run within a worker JVM: start the server, connect, run the outer loop
+ *   numbers sent, send back the checksum and compute time
+ * @param port of the coordinator
+ * @param id worker number
+ */
+private static void worker(int port, int id) throws IOException {
+
+  // not timed by the run, counted in startup
+  NestedParallel.startServer();
+
+  try (Socket sock = new Socket(InetAddress.getLoopbackAddress(), port)) {
+
+    DataInputStream  in  = new DataInputStream(sock.getInputStream());
+    DataOutputStream out = new DataOutputStream(sock.getOutputStream());
+
+    out.writeInt(id);
+    out.flush();
+
+    int[] outers = new int[in.readInt()];
+
+    for (int k = 0; k < outers.length; k++)
+      outers[k] = in.readInt();
+
+    long checksum = new NestedParallel().runOuters(outers);
+
+    out.writeLong(checksum);
+    out.writeLong(NestedParallel.end - NestedParallel.start);
+    out.flush();
+  }
+} // end-method
+} // end-class
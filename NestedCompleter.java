@@ -0,0 +1,176 @@
+package test8;
+
+import java.util.concurrent.CountedCompleter;
+
+/**
+ * Continuation-style engine (type_run 9), no task ever joins.
+ *
+ * The outer range is split in halves down to one outer loop number. That
+ *   task runs the root of its inner range, which is split the same way
+ *   down to leaves of LEAF inner loop numbers. A task that splits forks
+ *   the right half, runs the left half itself and returns, it does not
+ *   wait for either. The last child to finish completes its parent, so
+ *   when the last inner leaf of an outer loop number is done its
+ *   completion runs on up as a continuation: onCompletion() of the outer
+ *   task records the outer iteration, the way NestedAsyncTask.complete()
+ *   does, and then the outer range above it completes.
+ *
+ * No worker parks waiting for children so the pool never needs a
+ *   compensation thread. Only the submitting thread waits, outside the pool.
+ *
+ * With REDUCE each leaf sums into its own PartialSum and each task merges
+ *   the sums of its two children in onCompletion().
+ *
+ */
+public final class NestedCompleter extends CountedCompleter<Void> {
+
+  private static final long serialVersionUID = 1L;
+
+  // inner loop numbers per leaf, the split threshold of a parallel stream
+  static final int LEAF = Math.max(NestedParallel.innerLoop / (NestedParallel.parallelism << 2), 1);
+
+  private final int lo, hi;      // outer loop numbers lo .. hi-1
+  private final long submitted;  // nanoTime() of the run start
+  private NestedCompleter left, right;
+  private Inner inner;           // one outer loop number: its inner root
+  private boolean skipped;       // stopped before the inner loop
+  private PartialSum sum;        // REDUCE: result, else null
+
+/**
+ * @param parent completer, null for the root
+ * @param lo first outer loop number
+ * @param hi last outer loop number + 1
+ * @param submitted nanoTime() of the run start
+ */
+NestedCompleter(NestedCompleter parent, int lo, int hi, long submitted) {
+
+  super(parent);
+  this.lo = lo;
+  this.hi = hi;
+  this.submitted = submitted;
+}
+
+@Override
+public void compute() {
+
+  if  (hi - lo > 1) {
+
+      int mid = (lo + hi) >>> 1;
+
+      // right half forked, left half here, the last one done completes this
+      setPendingCount(1);
+      right = new NestedCompleter(this, mid, hi, submitted);
+      right.fork();
+      left = new NestedCompleter(this, lo, mid, submitted);
+      left.compute();
+      return;
+  }
+
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+
+  // thread info
+  NestedParallel.setThreadData(lo);
+
+  // stopped: no inner loop, complete now
+  if  (Deadline.stopped()) {
+
+      skipped = true;
+      tryComplete();
+      return;
+  }
+
+  // the inner root completes this when its last leaf is done
+  inner = new Inner(this, lo, 0, NestedParallel.innerLoop, began);
+  inner.compute();
+
+  e.done("completer", "compute", lo, submitted, began);
+
+} // end-method
+
+/**
+ * continuation: every child is done
+ */
+@Override
+public void onCompletion(CountedCompleter<?> caller) {
+
+  if  (left != null) {
+
+      if  (NestedParallel.REDUCE)
+          sum = new PartialSum().merge(left.sum).merge(right.sum);
+      return;
+  }
+
+  if  (skipped) return;
+
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+
+  sum = inner.sum;
+  NestedParallel.outerDone(lo, submitted);
+
+  e.done("completer", "complete", lo, submitted, began);
+
+} // end-method
+
+/**
+ * REDUCE: the merged result once complete, else null
+ */
+PartialSum getSum() { return sum; }
+
+  /**
+   * inner loop numbers lo .. hi-1 of one outer loop number
+   */
+  static final class Inner extends CountedCompleter<Void> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int i, lo, hi;
+    private final long began; // nanoTime() the outer iteration began
+    private Inner left, right;
+    private PartialSum sum;   // REDUCE: result, else null
+
+    Inner(CountedCompleter<?> parent, int i, int lo, int hi, long began) {
+
+      super(parent);
+      this.i = i;
+      this.lo = lo;
+      this.hi = hi;
+      this.began = began;
+    }
+
+  @Override
+  public void compute() {
+
+    if  (hi - lo > LEAF) {
+
+        int mid = (lo + hi) >>> 1;
+
+        setPendingCount(1);
+        right = new Inner(this, i, mid, hi, began);
+        right.fork();
+        left = new Inner(this, i, lo, mid, began);
+        left.compute();
+        return;
+    }
+
+    sum = (NestedParallel.REDUCE)? new PartialSum() : null;
+
+    // until stopped
+    for (int j = lo; j < hi; j++)
+      if  (!NestedParallel.innerWork("completer", sum, i, j, began)) break;
+
+    tryComplete();
+
+  } // end-method
+
+  @Override
+  public void onCompletion(CountedCompleter<?> caller) {
+
+    if  (left != null && NestedParallel.REDUCE)
+        sum = new PartialSum().merge(left.sum).merge(right.sum);
+  }
+  } // end-inner-class
+} // end-class
@@ -0,0 +1,66 @@
+package test8;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one inner task.
+ *
+ * For the stream engines an inner task is one j, for the Tymeac engines
+ *   it is one forked chunk of j values starting at inner. The event
+ *   duration is the execution time, the recording thread is the thread
+ *   that ran it. The queue wait is from the fork of the task or, for the
+ *   stream engines, from the start of its inner loop.
+ *
+ */
+@Name("test8.InnerTask")
+@Label("Inner Task")
+@Category({"Nested Parallel"})
+@Description("One inner loop task of a nested loop engine")
+@StackTrace(false)
+public class NestedInnerEvent extends jdk.jfr.Event {
+
+  @Label("Engine")
+  String engine;
+
+  @Label("Outer Index")
+  int outer;
+
+  @Label("Inner Index")
+  int inner;
+
+  @Label("Inner Count")
+  int count;
+
+  @Label("Queue Wait")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueWait;
+
+/**
+ * end the event and commit when recording
+ * @param engine name
+ * @param i outer loop number
+ * @param j first inner loop number
+ * @param count inner loop numbers in this task
+ * @param queued nanoTime() the task was queued
+ * @param began nanoTime() the task began
+ */
+void done(String engine, int i, int j, int count, long queued, long began) {
+
+  end();
+
+  if  (shouldCommit()) {
+
+      this.engine    = engine;
+      this.outer     = i;
+      this.inner     = j;
+      this.count     = count;
+      this.queueWait = began - queued;
+      commit();
+  }
+} // end-method
+} // end-class
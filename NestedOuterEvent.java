@@ -0,0 +1,61 @@
+package test8;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one outer loop iteration.
+ *
+ * The event duration is the execution time of the outer iteration, the
+ *   recording thread is the thread that ran it. For the stream engines the
+ *   queue wait is from the start of the run. For the Tymeac engines the
+ *   compute phase waits from the asyncRequest() and the complete phase
+ *   from the asyncRequest() to the call of complete().
+ *
+ */
+@Name("test8.OuterIteration")
+@Label("Outer Iteration")
+@Category({"Nested Parallel"})
+@Description("One outer loop iteration of a nested loop engine")
+@StackTrace(false)
+public class NestedOuterEvent extends jdk.jfr.Event {
+
+  @Label("Engine")
+  String engine;
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Outer Index")
+  int outer;
+
+  @Label("Queue Wait")
+  @Timespan(Timespan.NANOSECONDS)
+  long queueWait;
+
+/**
+ * end the event and commit when recording
+ * @param engine name
+ * @param phase run, compute or complete
+ * @param i outer loop number
+ * @param queued nanoTime() the iteration was queued
+ * @param began nanoTime() the iteration began
+ */
+void done(String engine, String phase, int i, long queued, long began) {
+
+  end();
+
+  if  (shouldCommit()) {
+
+      this.engine    = engine;
+      this.phase     = phase;
+      this.outer     = i;
+      this.queueWait = began - queued;
+      commit();
+  }
+} // end-method
+} // end-class
@@ -31,22 +31,81 @@ package test8;
  *   http://sourceforge.net/projects/tymeacdse/
  * 
  * Options:
- *  type_run  -- run with parallel or sequential inner loop with streams, or
- *                 with Tymeac scatter-gather.
+ *  type_run  -- 1 sequential inner loop with streams
+ *               2 parallel inner loop with streams
+ *               3 Tymeac scatter-gather
+ *               4 flattened into one parallel stream of (i, j) pairs
+ *               5 outer loop on virtual threads, inner loop fanned out to
+ *                   a pool of parallelism threads
+ *               6 parallel inner loop with streams in a dedicated pool,
+ *                   blocking kernels wrapped in a ManagedBlocker
+ *               7 inner loop with streams, parallel or sequential per
+ *                   outer iteration from the pool saturation, see Governor
+ *               8 parallel inner loop with streams, the outer stream in
+ *                   one dedicated pool and the inner streams in another,
+ *                   see LevelPool
+ *               9 CountedCompleter tasks, the end of each inner loop is a
+ *                   continuation of its outer iteration, no joins, see
+ *                   NestedCompleter
  *  USE_DELAY -- delay the start of test to enable a profiler
+ *  COST_SPLIT -- split the outer stream on estimated cost, not index count
+ *  SAMPLE_MILLIS -- thread state sampling interval, 0 for none
+ *  THREAD_DUMP -- print the last thread of each outer loop at end of run
+ *  journal   -- file each completed outer iteration is appended to, see
+ *                 ResultJournal
+ *  REDUCE    -- combine per task results where tasks join or complete
+ *                 instead of adding every cell to the shared respository
+ *  PACKED    -- Tymeac payloads preallocated before the run, (i, j) packed
+ *                 in a long, no allocation per fork (not with REDUCE)
+ *  kernel    -- work per (i, j) cell for every engine: cpu, memory, alloc,
+ *                 blocking or file, see Kernel
+ *  compensate -- most threads type_run 6 adds for blocked workers, and the
+ *                 inner pool of type_run 8
+ *  outerParallelism -- outer pool parallelism of type_run 8
+ *  innerParallelism -- inner pool parallelism of type_run 8
+ *  deadlineMillis -- stop starting work this long after the run starts,
+ *                 the run reports the (i, j) cells it finished, 0 for none
  *  outerLoop -- iterations in outer loop
  *  innerLoop -- iterations in inner loop
  *  parallelism -- override default ForkJoinPool/Tymeac parallelism level
+ *  grain     -- inner loop indexes per Tymeac fork, 0 picks it from the
+ *                 measured fork overhead
+ *  order     -- outer loop order by estimated cost: index, shortest (first)
+ *                 or longest (first), for the virtual and Tymeac
+ *                 submissions and the outer streams, which dispatch the
+ *                 order from a shared cursor
+ *  window    -- most Tymeac requests in flight, submission waits for a
+ *                 complete() past that, 0 for no limit
  *  
- * You will need the current JDK1.8 
+ * Each option may also be set without a recompile as a system property,
+ *   -Dnested.type_run=2 -Dnested.outerLoop=400 etc.
+ *  
+ * You will need JDK 11 or later (Flight Recorder events, Flow, VarHandle),
+ *   JDK 11 - 16 for the Tymeac engines (java.rmi.activation)
  * You will need the TymeacDSELite.jar file
  */
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.LongAdder;
 
-import com.tymeac.dse.base.InternalServer;
+import jdk.jfr.FlightRecorder;
+
 import com.tymeac.dse.base.Task;
 import com.tymeac.dse.base.TymeacInterface;
 import com.tymeac.dse.base.TymeacParm;
@@ -60,7 +119,7 @@ public class NestedParallel {
   
   static final long NPS = (1000L * 1000 * 1000); // for timing
   
-  static InternalServer s;
+  static TymeacEngine engine;
   static TymeacInterface ti;
   static TymeacParm TP;
   
@@ -69,7 +128,14 @@ public class NestedParallel {
   static final int seq_run  = 1;
   static final int para_run = 2;
   static final int ty_run   = 3;  
-  static final int type_run = seq_run;  // type of run *** adjust here ***
+  static final int flat_run = 4;
+  static final int vt_run   = 5;
+  static final int mb_run   = 6;
+  static final int gov_run  = 7;
+  static final int split_run = 8;
+  static final int cc_run   = 9;
+  static final int type_run = 
+      Integer.getInteger("nested.type_run", seq_run);  // type of run *** adjust here ***
   
   // for proof that all runs generate same number of tasks
   static final LongAdder respository = new LongAdder(); 
@@ -77,14 +143,104 @@ public class NestedParallel {
   // When using a profiler, it is sometimes best to delay formal execution until
   //   you've had a chance to establish linkage. Therefore, you can delay
   //   execution for 10 seconds with this option set to "true"
-  static final boolean USE_DELAY = false;
+  static final boolean USE_DELAY = Boolean.getBoolean("nested.USE_DELAY");
 	
-	static final int outerLoop = 200;	 // adjust for your needs
-	static final int innerLoop = 4000; // adjust for your needs
-	static final int parallelism = 8;	 // parallelism for common FJPool and Tymeac
+	static final int outerLoop = Integer.getInteger("nested.outerLoop", 200);	 // adjust for your needs
+	static final int innerLoop = Integer.getInteger("nested.innerLoop", 4000); // adjust for your needs
+	static final int parallelism = Integer.getInteger("nested.parallelism", 8);	 // parallelism for common FJPool and Tymeac
+	static final int grain = Integer.getInteger("nested.grain", 1);	 // j per Tymeac fork, 0 = auto
+  
+  // uselessWork(i, j) is O(i*j) so equal index slices are not equal work.
+  //   With this option set to "true" the outer stream of seq/para runs
+  //   is split on cumulative cost, see outerCost()
+  static final boolean COST_SPLIT = Boolean.getBoolean("nested.COST_SPLIT");
+  
+  // The run is sampled by a ThreadSampler that reports RUNNABLE/WAITING/
+  //   BLOCKED and join ratios per worker thread at the end of the run.
+  //   The old dump of the last thread of each outer loop is an option.
+  static final int SAMPLE_MILLIS = Integer.getInteger("nested.SAMPLE_MILLIS", 10);
+  static final boolean THREAD_DUMP = Boolean.getBoolean("nested.THREAD_DUMP");
+  
+  // Every cell adds to the shared respository LongAdder, from every worker.
+  //   With this option set to "true" each task sums into its own PartialSum
+  //   and the sums are merged at join/complete time, the kernel (work()) 
+  //   touches no shared state. 
+  static final boolean REDUCE = Boolean.getBoolean("nested.REDUCE");
+  
+  // merged result of the last REDUCE run
+  static PartialSum result;
+  
+  // Every Tymeac fork allocates a payload object. With this option set to
+  //   "true" the payloads come from a PackedArena allocated before timing.
+  static final boolean PACKED = Boolean.getBoolean("nested.PACKED") && !REDUCE;
+  
+  // The work per cell. cpu is the original sqrt loop, the others are
+  //   memory-bound, allocation-heavy or blocking work of the same i*j units
+  static final Kernel KERNEL = Kernel.named(System.getProperty("nested.kernel", "cpu"));
+  
+  // A blocked worker of type_run 6 is compensated with a new thread up to
+  //   this many extra threads, then it blocks without one
+  static final int compensate = Integer.getInteger("nested.compensate", parallelism);
+  
+  // With type_run 8 the outer and the inner streams run in pools of their
+  //   own, no outer worker steals an inner task. The outer workers block
+  //   on the inner loop without compensation.
+  static final int outerParallelism = Integer.getInteger("nested.outerParallelism", parallelism);
+  static final int innerParallelism = Integer.getInteger("nested.innerParallelism", parallelism);
+  
+  // pools of the last type_run 8 run
+  static LevelPool outerPool, innerPool;
+  
+  // type_run 3 submits every outer request before it waits, so the
+  //   requests queued in the server grow with outerLoop. With a window
+  //   at most this many are in flight, the next submission waits for a
+  //   complete(). 
+  static final int window = Integer.getInteger("nested.window", 0);
   
-  // Thread message for each outer loop, will print at end of run
-  static final Thread[] println = new Thread[outerLoop];
+  // free window slots of the current Tymeac run, null for no window
+  static volatile Semaphore slots;
+  
+  // Tymeac requests submitted and not completed, the most of the run
+  static final AtomicInteger inFlight = new AtomicInteger();
+  static int peakInFlight;
+  
+  // Latency-bound callers want a bounded answer. With a deadline every
+  //   engine stops starting work when it passes and the result is partial,
+  //   see Deadline
+  static final long deadlineMillis = Long.getLong("nested.deadlineMillis", 0);
+  
+  // latency from submit (the run start for the stream engines) to the
+  //   completion of each outer iteration
+  static final LatencyHistogram completion = new LatencyHistogram("Submit to complete per outer");
+  
+  // The cost of an outer iteration grows with i, in index order a cheap
+  //   one may wait behind expensive ones. shortest first gives the lowest
+  //   mean time to a result, longest first the shortest makespan. Each 
+  //   run reports both, from this histogram of run start to completion.
+  static final String ORDER = System.getProperty("nested.order", "index");
+  static final LatencyHistogram toResult = new LatencyHistogram("Run start to result per outer");
+  
+  // outer loop numbers in ORDER for the current run, null for index order
+  static int[] order;
+  
+  // Each completed outer iteration, its thread and latency, to a 
+  //   memory-mapped file as it completes, null for none
+  static final String JOURNAL = System.getProperty("nested.journal");
+  
+  // journal of the current run, null for none
+  static ResultJournal journal;
+  
+  // The first Flight Recorder event of a JVM sets up the recorder, about
+  //   half a second on JDK 11. Register the events here so no timed run
+  //   pays for it.
+  static {
+    FlightRecorder.register(NestedOuterEvent.class);
+    FlightRecorder.register(NestedInnerEvent.class);
+  }
+  
+  // Thread message for each outer loop, will print at end of run. Only
+  //   kept for THREAD_DUMP, it grows with the outer loop.
+  static final Thread[] println = (THREAD_DUMP)? new Thread[outerLoop] : null;
 
   /**
    * Start of application
@@ -108,109 +264,731 @@ public class NestedParallel {
  */
 public void nestedLoops() {
   
-  String type = null;
+  String type = typeName(type_run);
+  
+  if  (type == null) {
+      System.out.println("Set type_run to 1 - 9");
+      System.exit(0);
+  }
+  
+  System.out.println("Using " + type + ", " + KERNEL + " kernel");
+  
+  ThreadSampler sampler = (SAMPLE_MILLIS > 0)? new ThreadSampler(SAMPLE_MILLIS).start() : null;
+  
+  runLoops(type_run);
+  
+  // thread state ratios
+  if  (sampler != null) sampler.stop().report(System.out);
+    
+  // print thread info
+  if  (THREAD_DUMP)
+      for (int i = 0; i < outerLoop; i++)       
+        System.out.println(i + "\t" + println[i]);   
+  
+  System.out.println("Total: " + checksum()); 
+  
+  Deadline d = Deadline.current();
+  
+  if  (d.timed() && d.completed() < d.cells()) 
+      System.out.println("Deadline passed, partial result. Cells done: " + d.completed() 
+                         + " of " + d.cells() + ", outer loops done: " + d.outersCompleted()
+                         + ", checksum of done cells: " + d.checksum());
+  
+  else if (!d.timed() && d.expired())
+      System.out.println("Run cancelled, partial result");
+  
+  if  (REDUCE)
+      System.out.println("Work result: " + result.getWork());
+  
+  completion.report(System.out);
+  
+  if  (type_run == ty_run && grain == GrainSize.AUTO)
+      System.out.println("Measured fork cost (ns): " + GrainSize.forkNanos());
+  
+  System.out.printf("Order %s: mean time to result %.3f ms, makespan %.3f ms\n",
+                    ORDER, toResult.mean() / 1e6, (double) (end - start) / 1e6);
+  
+  if  (type_run == ty_run)
+      System.out.println("Most requests in flight: " + peakInFlight 
+                         + ((window > 0)? " (window " + window + ")" : " (no window)"));
+  
+  if  (type_run == gov_run)
+      System.out.println("Governor inner loops, parallel: " + Governor.parallelCount()
+                         + " sequential: " + Governor.sequentialCount());
+  
+  if  (type_run == split_run) {
+      outerPool.report(System.out);
+      innerPool.report(System.out);
+  }
+
+  double elapsed = (double)(end - start) / NPS;
+  System.out.printf("Elapsed time : %5.9f\n", elapsed);
+
+  // shut down cleanly, no System.exit() needed
+  stopServer();
+}
+
+/**
+ * Run one engine once, sets start/end and the respository total.
+ *   May be called repeatedly (benchmark iterations), the Tymeac
+ *   server is only created on the first call. 
+ * @param type one of the *_run constants
+ */
+void runLoops(int type) {
+  
+  respository.reset();
+  result = new PartialSum();
+  completion.reset();
+  toResult.reset();
+  order = CostSpliterator.order(ORDER, outerLoop, NestedParallel::outerCost);
+  openJournal();
   
-  switch (type_run) {
+  switch (type) {
             
-      case 1: 
-        type = "sequential";
-        System.out.println("Using " + type + " inner loop");
+      case seq_run: 
         seqLoops();
         break;
       
-      case 2: 
-        type = "parallel";
-        System.out.println("Using " + type + " inner loop");
-        paraLoops();
+      case para_run: 
+        paraLoops("para", false);
       break;
       
-      case 3: 
-        type = "Tymeac";
-        System.out.println("Using " + type + " inner loop");
-        tymeacLoops();
+      case ty_run: 
+        tymeacLoops(order);
+      break; 
+      
+      case flat_run: 
+        flatLoops();
+      break; 
+      
+      case vt_run: 
+        virtualLoops();
+      break; 
+      
+      case mb_run: 
+        managedLoops();
+      break; 
+      
+      case gov_run: 
+        Governor.reset();
+        paraLoops("governed", true);
+      break; 
+      
+      case split_run: 
+        splitLoops();
+      break; 
+      
+      case cc_run: 
+        completerLoops();
       break; 
       
       default: 
-        System.out.println("Set type_run to 1, 2 or 3");
-        System.exit(0);
+        throw new IllegalArgumentException("Unknown type_run: " + type);
     }
-    
-  // print thread info
-  for (int i = 0; i < outerLoop; i++)       
-    System.out.println(i + "\t" + println[i]);   
   
-  System.out.println("Total: " + respository.sum()); 
+  closeJournal();
+  
+} // end-method
 
-  double elapsed = (double)(end - start) / NPS;
-  System.out.printf("Elapsed time : %5.9f\n", elapsed);
+/**
+ * Run the Tymeac engine over some of the outer loop numbers, one worker 
+ *   JVM of a NestedCluster
+ * @param outers outer loop numbers to submit
+ * @return checksum of the run
+ */
+long runOuters(int[] outers) {
+  
+  respository.reset();
+  result = new PartialSum();
+  completion.reset();
+  toResult.reset();
+  openJournal();
+  
+  tymeacLoops(outers);
+  
+  closeJournal();
+  
+  return checksum();
+  
+} // end-method
 
-  System.exit(0); // necessary since Tymeac starts RMI threads
-}
+/**
+ * The run starts now, after the setup of its engine: the deadline, if
+ *   any, counts from here, not from the server start or the arena.
+ */
+private static void startRun() {
+  
+  Deadline.start(deadlineMillis, outerLoop, innerLoop);
+  start = System.nanoTime();
+} // end-method
+
+/**
+ * new journal for a run when asked for, not timed
+ */
+private static void openJournal() {
+  
+  if  (JOURNAL == null) return;
+  
+  try {
+    journal = ResultJournal.create(Paths.get(JOURNAL), outerLoop);
+  }
+  catch (IOException e) {
+    throw new UncheckedIOException(e);
+  }
+} // end-method
+
+/**
+ * clean close of the journal of a run, a run that throws leaves it open
+ */
+private static void closeJournal() {
+  
+  if  (journal == null) return;
+  
+  try {
+    journal.close();
+    journal = null;
+  }
+  catch (IOException e) {
+    throw new UncheckedIOException(e);
+  }
+} // end-method
+
+/**
+ * proof all runs generate same number of tasks
+ * @return checksum of the last run
+ */
+static long checksum() {
+  
+  return (REDUCE)? result.getChecksum() : respository.sum();
+} // end-method
+
+/**
+ * printable name of a type of run
+ * @param type
+ * @return name or null when unknown
+ */
+static String typeName(int type) {
+  
+  switch (type) {
+      case seq_run:  return "sequential inner loop";
+      case para_run: return "parallel inner loop";
+      case ty_run:   return "Tymeac inner loop";
+      case flat_run: return "flattened inner loop";
+      case vt_run:   return (TaskScope.hasVirtualThreads())? "virtual thread outer loop, pooled inner loop" 
+                                                           : "platform thread pool outer loop (no virtual threads before JDK 21), pooled inner loop";
+      case mb_run:   return "managed blocker inner loop";
+      case gov_run:  return "governed inner loop";
+      case split_run: return "split pools inner loop";
+      case cc_run:   return "counted completer inner loop";
+      default:       return null;
+  }
+} // end-method
 	
 private void seqLoops () {
-	  
-  start = System.nanoTime();
+  
+  startRun();
+  
+  streamLoops("seq", (i, began) -> innerStream(IntStream.range(0,innerLoop).sequential(),
+                                               cell("seq"), i, began));
+  
+  end = System.nanoTime();	 	  
+}
+
+/**
+ * @param engine name for the events
+ * @param governed inner loop parallel only when the Governor says so
+ */
+private void paraLoops (String engine, boolean governed) {
+  
+  startRun();
+  
+  streamLoops(engine, (i, began) -> {
     
-  // Outer loop always parallel    
-  IntStream.range(0,outerLoop).parallel().forEach(i -> {
-      
-    // thread info
-    NestedParallel.setThreadData(i);
-      
-    IntStream.range(0,innerLoop).sequential().forEach(j -> {
+    IntStream inner = (!governed || Governor.parallelInner())? IntStream.range(0,innerLoop).parallel() 
+                                                             : IntStream.range(0,innerLoop).sequential();
     
-      uselessWork(i, j);
-      });     
+    return innerStream(inner, cell(engine), i, began);
   });
-
-  end = System.nanoTime();	 	  
+  
+  end = System.nanoTime();      
 }
 
-private void paraLoops () {
+  /**
+   * the inner loop of one outer iteration of streamLoops()
+   */
+  private interface InnerLoop {
     
-  start = System.nanoTime();
+    /**
+     * @param i from top loop
+     * @param began nanoTime() the outer iteration began
+     * @return REDUCE: sum of the cells, else null
+     */
+    PartialSum run(int i, long began);
+  }
+  
+  /**
+   * one (i, j) cell of an inner loop
+   */
+  private interface Cell {
     
-  // Outer loop always parallel    
-  IntStream.range(0,outerLoop).parallel().forEach(i -> {
-      
-    // thread info
-    NestedParallel.setThreadData(i);
-      
-    IntStream.range(0,innerLoop).parallel().forEach(j -> {
+    void run(PartialSum sum, int i, int j, long queued);
+  }
+
+/**
+ * The parallel outer stream of the stream engines (type_run 1, 2, 6, 7
+ *   and 8), each outer iteration runs inner. With REDUCE each outer 
+ *   iteration collects its inner loop into PartialSums and the outer
+ *   stream collects those. Runs in the pool of the calling task.
+ * @param engine name for the events
+ * @param inner the inner loop
+ */
+private void streamLoops (String engine, InnerLoop inner) {
+  
+  // Outer loop always parallel
+  if  (REDUCE)
+      result = outerStream().collect(PartialSum::new, 
+                                     (sum, i) -> sum.merge(outerIteration(engine, i, inner)),
+                                     PartialSum::merge);
+  else
+      outerStream().forEach(i -> outerIteration(engine, i, inner));
+  
+} // end-method
+
+/**
+ * One outer iteration of streamLoops()
+ * @return REDUCE: sum of the cells, else null
+ */
+private static PartialSum outerIteration (String engine, int i, InnerLoop inner) {
+  
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
     
+  // thread info
+  NestedParallel.setThreadData(i);
+
+  // stopped: fork no inner loop
+  if  (Deadline.stopped()) return null;
+  
+  PartialSum sum = inner.run(i, began);
+  
+  e.done(engine, "run", i, start, began);
+  
+  outerDone(i, start);
+  
+  return sum;
+  
+} // end-method
+
+/**
+ * An inner loop as a stream of j
+ * @param js inner loop numbers, parallel or sequential
+ * @param cell work of one (i, j) cell
+ * @return REDUCE: sum of the cells, else null
+ */
+private static PartialSum innerStream (IntStream js, Cell cell, int i, long began) {
+  
+  if  (!REDUCE) {
+      js.forEach(j -> cell.run(null, i, j, began));
+      return null;
+  }
+  
+  return js.collect(PartialSum::new, (in, j) -> cell.run(in, i, j, began), PartialSum::merge);
+  
+} // end-method
+
+/**
+ * innerWork() of an engine as a Cell
+ */
+private static Cell cell (String engine) {
+  
+  return (sum, i, j, queued) -> innerWork(engine, sum, i, j, queued);
+} // end-method
+
+/**
+ * One inner iteration of a stream engine within a Flight Recorder event,
+ *   none once the run is stopped
+ * @param engine name for the event
+ * @param sum REDUCE: adds the cell here, else null
+ * @param i from top loop, j from bottom loop
+ * @param queued nanoTime() the inner loop began
+ * @return false when stopped
+ */
+static boolean innerWork(String engine, PartialSum sum, int i, int j, long queued) {
+  
+  if  (Deadline.stopped()) return false;
+  
+  NestedInnerEvent e = new NestedInnerEvent();
+  e.begin();
+  long began = (e.isEnabled())? System.nanoTime() : queued;
+  
+  if  (sum != null)
+      sum.add(i, j, work(i, j));
+  else
       uselessWork(i, j);
-    });     
-  });
+  
+  e.done(engine, i, j, 1, queued, began);
+  
+  Deadline.done(i, j);
+  
+  return true;
+  
+} // end-method
+
+/**
+ * an outer iteration completed
+ * @param i outer loop number
+ * @param submitted nanoTime() it was submitted
+ */
+static void outerDone(int i, long submitted) {
+  
+  long now   = System.nanoTime();
+  long nanos = now - submitted;
+  
+  completion.record(i, nanos);
+  toResult.record(i, now - start);
+  
+  if  (journal != null) journal.append(i, 1, 0, nanos);
+} // end-method
+
+/**
+ * The parallel outer loop, by index count or by cost, in ORDER.
+ *   A parallel stream splits and runs its elements in no set order, so
+ *   with an ORDER the elements are only tickets: each started outer
+ *   iteration takes the next outer loop number of the order from a shared
+ *   cursor, whichever ticket a worker runs. COST_SPLIT splits the index
+ *   order only.
+ * @return parallel stream of 0 .. outerLoop-1
+ */
+private static IntStream outerStream() {
+  
+  int[] o = order;
+  
+  if  (o == null)
+      return (COST_SPLIT)
+          ? StreamSupport.intStream(new CostSpliterator(0, outerLoop, NestedParallel::outerCost), true)
+          : IntStream.range(0,outerLoop).parallel();
+  
+  // started in ORDER: the next outer loop number at the cursor
+  AtomicInteger cursor = new AtomicInteger();
+  
+  return IntStream.range(0, o.length).parallel().map(p -> o[cursor.getAndIncrement()]);
+} // end-method
+
+/**
+ * Estimated cost of one outer iteration: the sum of i*j over the inner
+ *   loop plus one unit per inner iteration for the call itself.
+ * @param i outer loop number
+ * @return relative cost
+ */
+static double outerCost(int i) {
+  
+  return (double) i * innerLoop * (innerLoop - 1) / 2 + innerLoop;
+} // end-method
+
+/**
+ * One level of fork/join over every (i, j) pair. There is no inner
+ *   stream so no outer worker ever waits on an inner join.
+ */
+private void flatLoops () {
+  
+  // cells left per outer loop number, the last one completes it
+  AtomicIntegerArray left = new AtomicIntegerArray(outerLoop);
+  
+  for (int i = 0; i < outerLoop; i++)
+    left.set(i, innerLoop);
+    
+  startRun();
+  
+  if  (REDUCE)
+      result = StreamSupport.longStream(new FlatSpliterator(outerLoop, innerLoop), true)
+          .collect(PartialSum::new, (sum, pair) -> {
+            
+            int i = FlatSpliterator.outer(pair);
+            int j = FlatSpliterator.inner(pair);
+            
+            // thread info
+            if  (j == 0) NestedParallel.setThreadData(i);
+            
+            if  (innerWork("flat", sum, i, j, start) && left.decrementAndGet(i) == 0) 
+                outerDone(i, start);
+          }, PartialSum::merge);
+  else
+    StreamSupport.longStream(new FlatSpliterator(outerLoop, innerLoop), true).forEach(pair -> {
+      
+      int i = FlatSpliterator.outer(pair);
+      int j = FlatSpliterator.inner(pair);
+      
+      // thread info
+      if  (j == 0) NestedParallel.setThreadData(i);
+      
+      if  (innerWork("flat", null, i, j, start) && left.decrementAndGet(i) == 0) 
+          outerDone(i, start);
+    });
 
   end = System.nanoTime();      
 }
 
-private void tymeacLoops () {
+/**
+ * Each outer iteration runs on its own virtual thread and fans the inner
+ *   loop out, grain j values per task, to a fixed pool of parallelism 
+ *   threads. The outer thread waits for its inner tasks in 
+ *   TaskScope.forkAll(). A virtual thread unmounts while it waits so the
+ *   outer level never holds a carrier and nothing needs compensating.
+ *   Before JDK 21 the outer level is a pool of parallelism platform
+ *   threads instead.
+ */
+private void virtualLoops () {
+  
+  ExecutorService outer = TaskScope.newThreadPerTaskExecutor(parallelism);
+  ExecutorService inner = Executors.newFixedThreadPool(parallelism, TaskScope.named("vt-inner-"));
+  
+  int chunk = Math.max(grain, 1);
+  
+  startRun();
+  
+  try {
+    List<Callable<PartialSum>> outers = new ArrayList<>(outerLoop);
+    
+    for (int i = 0; i < outerLoop; i++) {
+      
+      final int oi = (order != null)? order[i] : i;
+      
+      outers.add(() -> {
+        
+        NestedOuterEvent e = new NestedOuterEvent();
+        e.begin();
+        long began = System.nanoTime();
+        
+        // thread info
+        NestedParallel.setThreadData(oi);
+        
+        List<Callable<PartialSum>> inners = new ArrayList<>();
+        
+        // stopped: fork no inner tasks
+        for (int j = 0; j < innerLoop && !Deadline.stopped(); j += chunk) {
+          
+          final int lo = j, hi = Math.min(j + chunk, innerLoop);
+          
+          inners.add(() -> {
+            PartialSum sum = new PartialSum();
+            for (int k = lo; k < hi; k++)
+              innerWork("virtual", (REDUCE)? sum : null, oi, k, began);
+            return sum;
+          });
+        } // end-for
+        
+        PartialSum sum = new PartialSum();
+        
+        // merge at join
+        for (PartialSum in : TaskScope.forkAll(inner, inners))
+          sum.merge(in);
+        
+        e.done("virtual", "run", oi, start, began);
+        
+        // record only an outer iteration that did work
+        if  (Deadline.ran(oi)) outerDone(oi, start);
+        return sum;
+      });
+    } // end-for
+    
+    for (PartialSum sum : TaskScope.forkAll(outer, outers))
+      result.merge(sum);
+  }
+  catch (ExecutionException e) {
+    throw new IllegalStateException("virtual thread run failed", e.getCause());
+  }
+  catch (InterruptedException e) {
+    
+    // stop the run, forkAll() cancelled the outer tasks
+    Deadline.current().cancel();
+    Thread.currentThread().interrupt();
+  }
+  finally {
+    end = System.nanoTime();
+    outer.shutdown();
+    inner.shutdown();
+  }
+} // end-method
+
+/**
+ * paraLoops() within a dedicated pool of parallelism threads. When the
+ *   kernel blocks each inner iteration runs as a ManagedBlocker, so the 
+ *   pool may add a thread for the blocked worker. At most compensate 
+ *   threads are added, past that the worker blocks without one.
+ */
+private void managedLoops () {
+  
+  ForkJoinPool pool = new ForkJoinPool(parallelism,
+                                       ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                                       null, false, 0,
+                                       parallelism + compensate, 1,
+                                       p -> true, // saturated: block uncompensated
+                                       60, TimeUnit.SECONDS);
+  
+  startRun();
+  
+  try {
+    pool.submit(() -> streamLoops("managed", 
+        (i, began) -> innerStream(IntStream.range(0,innerLoop).parallel(), 
+                                  NestedParallel::managedWork, i, began))).join();
+  }
+  finally {
+    end = System.nanoTime();
+    pool.shutdown();
+  }
+} // end-method
+
+/**
+ * One inner iteration of type_run 6, a ManagedBlocker when the kernel 
+ *   blocks
+ * @param sum REDUCE: adds the cell here, else null
+ */
+private static void managedWork(PartialSum sum, int i, int j, long queued) {
+  
+  if  (!KERNEL.blocks()) {
+      innerWork("managed", sum, i, j, queued);
+      return;
+  }
+  
+  try {
+    ForkJoinPool.managedBlock(new BlockingCell(sum, i, j, queued));
+  }
+  catch (InterruptedException e) {
+    Thread.currentThread().interrupt();
+  }
+} // end-method
+
+  /**
+   * blocking inner iteration, run once by managedBlock()
+   */
+  private static final class BlockingCell implements ForkJoinPool.ManagedBlocker {
+    
+    final PartialSum sum;
+    final int i, j;
+    final long queued;
+    boolean done;
+    
+    BlockingCell(PartialSum sum, int i, int j, long queued) {
+      
+      this.sum = sum; this.i = i; this.j = j; this.queued = queued;
+    }
+    
+  @Override
+  public boolean block() {
+    
+    innerWork("managed", sum, i, j, queued);
+    done = true;
+    return true;
+  }
+  
+  @Override
+  public boolean isReleasable() { return done; }
+  } // end-inner-class
+
+/**
+ * paraLoops() with a dedicated pool per level. The outer stream runs in
+ *   outerPool, each outer iteration submits its inner stream to innerPool
+ *   and waits for it. The outer workers only hold outer tasks and the 
+ *   inner workers only inner ones, so no outer worker is stuck in an
+ *   inner join. The outer pool times each outer iteration, the inner pool
+ *   each inner stream from its start on an inner worker to its end.
+ */
+private void splitLoops () {
+  
+  outerPool = new LevelPool("nested-outer-", outerParallelism, outerParallelism);
+  innerPool = new LevelPool("nested-inner-", innerParallelism, innerParallelism + compensate);
+  
+  startRun();
+  
+  try {
+    outerPool.pool().submit(() -> streamLoops("split", (i, began) -> {
+      
+      // the inner pool times the inner stream on its own worker
+      PartialSum sum = innerPool.pool().submit(() -> {
+        
+        long t0 = System.nanoTime();
+        PartialSum in = innerStream(IntStream.range(0,innerLoop).parallel(), cell("split"), i, began);
+        innerPool.timed(System.nanoTime() - t0);
+        return in;
+      }).join();
+      
+      // the outer pool the whole outer iteration, the wait for the inner pool too
+      outerPool.timed(System.nanoTime() - began);
+      
+      return sum;
+    })).join();
+  }
+  finally {
+    end = System.nanoTime();
+    outerPool.shutdown();
+    innerPool.shutdown();
+  }
+} // end-method
+
+/**
+ * The nested loop as one tree of CountedCompleters in the common pool. 
+ *   Only this thread waits, outside the pool, see NestedCompleter.
+ */
+private void completerLoops () {
+  
+  startRun();
+  
+  NestedCompleter root = new NestedCompleter(null, 0, outerLoop, start);
+  
+  ForkJoinPool.commonPool().invoke(root);
+  
+  if  (REDUCE) result = root.getSum();
+  
+  end = System.nanoTime();      
+} // end-method
+
+/**
+ * Tymeac server setup, only the first call starts the engine, repeated 
+ *   runs reuse it until stopServer()
+ */
+static void startServer() {
+  
+  if  (engine == null) {
+    
+      engine = TymeacEngine.start(parallelism);
+      ti = engine.tymeac();
+  }
+} // end-method
+
+/**
+ * shut the engine down, the next startServer() starts a new one
+ */
+static void stopServer() {
+  
+  if  (engine != null) {
+    
+      engine.close();
+      engine = null;
+      ti = null;
+  }
+} // end-method
+
+/**
+ * @param outers outer loop numbers to submit, all of them but for a
+ *   NestedCluster worker, null for 0 .. outerLoop-1 in index order
+ */
+private void tymeacLoops (int[] outers) {
   
   /*
    * Tymeac server setup. Since the F/J framework uses the submitting thread
    *   as a worker thread it masks the framework setup-time. 
    *   Therefore, we're not timing the Tymeac setup-time here.
    */
+  startServer();
   
-  // passed args when starting server   
-  String[] in = {"-threads", // use threads override (default currently 4)
-                 "" + parallelism, // this many threads
-                 "-no",      // no verbose - comment line for start up messages
-                 "-s"        // stand-a-lone mode (no DB)
-                };
-  
-  s = new InternalServer(); // internal, no RMI/IIOP etc      
-  ti = s.createServer(in); // start the server with above args
-    
-  // When failed, stop
-  if  (ti == null) { 
-      System.out.println("ti is null, createServer failed");
-      System.exit(0);
-  }
+  int count = (outers != null)? outers.length : outerLoop;
   
   // will wait for all outer submits to complete
-  CountDownLatch latch = new CountDownLatch(outerLoop);
+  CountDownLatch latch = new CountDownLatch(count);
+  
+  // REDUCE: each request's complete() fills its own slot
+  PartialSum[] sums = (REDUCE)? new PartialSum[outerLoop] : null;
   
   // class data for submitted work
   NestedAsyncTask myI = new NestedAsyncTask();  
@@ -219,17 +997,41 @@ private void tymeacLoops () {
   // Parm for the server: class object. will set input later
   TymeacParm TP = new TymeacParm (innaC, null); 
   
+  // PACKED: all payloads allocated here, not timed
+  PackedArena arena = (PACKED)? PackedArena.prepare(outerLoop, innerLoop, grain, latch) : null;
+  
+  slots = (window > 0)? new Semaphore(window) : null;
+  inFlight.set(0);
+  peakInFlight = 0;
+  
   /*
    * end of server setup
    */
   
-  start = System.nanoTime();
+  startRun();
   
-  // submit all nested tasks
-  for (int i = 0; i < outerLoop; i++) {
+  // submit all nested tasks, window full: wait for a complete()
+  for (int n = 0; n < count; n++) {
     
-    // new input for new submission: outer loop number, total inner loop, countdown
-    TP.setInput(new PassClass(i, innerLoop, latch));
+    int i = (outers != null)? outers[n] : n;
+    
+    // stopped: count down the requests never submitted
+    if  (Deadline.stopped() || !acquireSlot()) {
+      
+        for (int k = n; k < count; k++)
+          latch.countDown();
+        break;
+    }
+    
+    // new input for new submission: outer loop number, total inner loop, grain, countdown
+    if  (PACKED) {
+        arena.outers[i].submitted = System.nanoTime();
+        TP.setInput(arena.outers[i]);
+    }
+    else
+        TP.setInput(new PassClass(i, innerLoop, grain, sums, latch));
+    
+    peakInFlight = Math.max(peakInFlight, inFlight.incrementAndGet());
     
     try {        
       // call tymeac for an asynchronous request
@@ -248,13 +1050,88 @@ private void tymeacLoops () {
     } // end-catch    
   } // end-for 
     
-  // wait until done
+  // wait until done, or the deadline or an interrupt stops the run. The
+  //   requests still queued then skip their work, so wait for those too.
+  awaitRequests(latch);
+  
+  // merge the slots, the latch orders their writes
+  if  (REDUCE)
+      for (PartialSum sum : sums) 
+        result.merge(sum);
+  
+  end = System.nanoTime();  
+  
+} // end-method
+
+/**
+ * take a window slot for the next request, waits for a complete() when
+ *   the window is full
+ * @return true when taken or there is no window, false when the run 
+ *   stopped while waiting
+ */
+private static boolean acquireSlot() {
+  
+  Semaphore s = slots;
+  
+  if  (s == null) return true;
+  
+  Deadline d = Deadline.current();
+  
   try {
-    latch.await();
+    if  (s.tryAcquire(d.remainingNanos(), TimeUnit.NANOSECONDS)) return true;
+    
+    d.expired(); // timed out: stopped from now on
+    return false;
   }
-  catch (InterruptedException ignore) {}
+  catch (InterruptedException e) {
+    
+    // stop the run, with or without a deadline
+    d.cancel();
+    Thread.currentThread().interrupt();
+    return false;
+  }
+} // end-method
+
+/**
+ * a Tymeac request completed, frees its window slot
+ */
+static void requestDone() {
   
-  end = System.nanoTime();  
+  inFlight.decrementAndGet();
+  
+  Semaphore s = slots;
+  if  (s != null) s.release();
+} // end-method
+
+/**
+ * wait for every async request. Tymeac has no cancel for an async
+ *   request so a stop is cooperative: the tasks of the outstanding 
+ *   requests see Deadline.stopped() and complete without working.
+ * @param latch
+ */
+private static void awaitRequests(CountDownLatch latch) {
+  
+  Deadline d = Deadline.current();
+  boolean interrupted = false;
+  
+  while (true) {
+    try {
+      if  (d.expired())
+          latch.await();
+      else if  (!latch.await(d.remainingNanos(), TimeUnit.NANOSECONDS))
+          d.expired(); // timed out: stopped from now on
+      
+      if  (latch.getCount() == 0) break;
+    }
+    catch (InterruptedException e) {
+      interrupted = true;
+      
+      // stop the run, with or without a deadline
+      d.cancel();
+    }
+  } // end-while
+  
+  if  (interrupted) Thread.currentThread().interrupt();
   
 } // end-method
 
@@ -267,7 +1144,7 @@ private void tymeacLoops () {
 protected static void setThreadData(int i) {
   
   // thread info, will print at end of run
-  println[i] = Thread.currentThread();
+  if  (THREAD_DUMP) println[i] = Thread.currentThread();
   
 } // end-method
 	
@@ -279,15 +1156,21 @@ protected static void setThreadData(int i) {
  */
 protected static double uselessWork(int i, int j) {
 	
-  double back = 0.0;
-	long max = i * j;
-	for(int x=0; x < max; x++) {
-		back += Math.sqrt(max);
-	}	
+  double back = work(i, j);
 	
 	// for proof that all runs generate same number of tasks
 	respository.add(i + j);
 		
   return back;
 } // end-method
+
+/**
+ * The work itself, no shared state
+ * @param i from top loop, j from bottom loop
+ * @return result of the work
+ */
+protected static double work(int i, int j) {
+	
+  return KERNEL.run(i, j);
+} // end-method
 } // end-class
@@ -0,0 +1,198 @@
+package test8;
+
+/*
+ *
+ * Parameter sweep of the nested loop engines.
+ *
+ * Each point of the grid engine x kernel x outerLoop x innerLoop x parallelism runs
+ *   in its own JVM so no point inherits the JIT state, the threads or the
+ *   common pool of another. The results are written as CSV and JSON for
+ *   plotting scaling curves and finding where nested parallelism stops
+ *   paying.
+ *
+ * Options (system properties, comma separated lists are crossed):
+ *  sweep.engines     -- seq, para, tymeac, flat, virtual, managed, governed,
+ *                       split, completer, waitm, flow
+ *                       (default all but waitm and flow)
+ *  sweep.kernels     -- cpu, memory, alloc, blocking, file (default cpu)
+ *  sweep.outerLoop   -- outer loop iterations    (default 50,100,200)
+ *  sweep.innerLoop   -- inner loop iterations    (default 1000,2000,4000)
+ *  sweep.parallelism -- FJPool/Tymeac parallelism (default 2,4,8)
+ *  sweep.repeat      -- JVMs per point           (default 1)
+ *  sweep.csv         -- CSV output file          (default sweep.csv)
+ *  sweep.json        -- JSON output file         (default sweep.json)
+ *  bench.jvmArgs     -- extra JVM options for each point, space separated
+ */
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sweep runner with machine-readable results
+ *
+ */
+public class NestedSweep {
+
+  static final String[] engines   = NestedBenchmark.list("sweep.engines", "seq,para,tymeac,flat,virtual,managed,governed,split,completer");
+  static final String[] kernels   = NestedBenchmark.list("sweep.kernels",     "cpu");
+  static final String[] outers    = NestedBenchmark.list("sweep.outerLoop",   "50,100,200");
+  static final String[] inners    = NestedBenchmark.list("sweep.innerLoop",   "1000,2000,4000");
+  static final String[] parallels = NestedBenchmark.list("sweep.parallelism", "2,4,8");
+
+  static final int repeat = Integer.getInteger("sweep.repeat", 1);
+
+  static final String HEADER =
+      "engine,kernel,outerLoop,innerLoop,parallelism,elapsedNanos,checksum,peakThreads,startedThreads";
+
+  // leading columns that are strings in the JSON
+  static final int STRING_COLUMNS = 2;
+
+/**
+ * Start of application
+ * @param args -child engine when running as a point
+ */
+public static void main(String[] args) throws Exception {
+
+  if  (args.length == 2 && args[0].equals("-child")) {
+
+      child(args[1]);
+      NestedBenchmark.stopServer(args[1]);
+      return;
+  }
+
+  List<String[]> rows = new ArrayList<>();
+
+  System.out.println(HEADER);
+
+  for (String kernel : kernels)
+    for (String outer : outers)
+      for (String inner : inners)
+        for (String par : parallels)
+          for (String engine : engines)
+            for (int r = 0; r < repeat; r++) {
+
+              List<String> props = Arrays.asList(
+                  "-Dnested.kernel="      + kernel,
+                  "-Dnested.outerLoop="   + outer,
+                  "-Dnested.innerLoop="   + inner,
+                  "-Dnested.parallelism=" + par,
+                  "-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + par);
+
+              for (String line : NestedBenchmark.launch(NestedSweep.class, props, "-child", engine))
+                if  (line.startsWith(NestedBenchmark.RESULT)) {
+
+                    String csv = line.substring(NestedBenchmark.RESULT.length() + 1);
+                    System.out.println(csv);
+                    rows.add(csv.split(","));
+                }
+            } // end-for
+
+  writeCsv(System.getProperty("sweep.csv", "sweep.csv"), rows);
+  writeJson(System.getProperty("sweep.json", "sweep.json"), rows);
+
+  crossover(rows);
+
+} // end-method
+
+/**
+ * Run one point within the forked JVM
+ * @param engine
+ */
+private static void child(String engine) {
+
+  ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+
+  long nanos = NestedBenchmark.runOnce(engine);
+
+  System.out.println(NestedBenchmark.RESULT + " "
+                     + engine + ","
+                     + NestedParallel.KERNEL + ","
+                     + Integer.getInteger("nested.outerLoop") + ","
+                     + Integer.getInteger("nested.innerLoop") + ","
+                     + Integer.getInteger("nested.parallelism") + ","
+                     + nanos + ","
+                     + NestedBenchmark.checksum(engine) + ","
+                     + mx.getPeakThreadCount() + ","
+                     + mx.getTotalStartedThreadCount());
+} // end-method
+
+/**
+ * all rows as CSV
+ */
+private static void writeCsv(String file, List<String[]> rows) throws IOException {
+
+  try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+
+    out.println(HEADER);
+
+    for (String[] row : rows)
+      out.println(String.join(",", row));
+  }
+} // end-method
+
+/**
+ * all rows as a JSON array of objects, engine and kernel are the string fields
+ */
+private static void writeJson(String file, List<String[]> rows) throws IOException {
+
+  String[] names = HEADER.split(",");
+
+  try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+
+    out.println("[");
+
+    for (int r = 0; r < rows.size(); r++) {
+
+      String[] row = rows.get(r);
+      StringBuilder sb = new StringBuilder("  {");
+
+      for (int c = 0; c < names.length; c++) {
+
+        if  (c > 0) sb.append(", ");
+        sb.append("\"").append(names[c]).append("\": ");
+
+        if  (c < STRING_COLUMNS)
+            sb.append("\"").append(row[c]).append("\"");
+        else
+            sb.append(row[c]);
+      }
+
+      sb.append((r < rows.size() - 1)? "}," : "}");
+      out.println(sb);
+    }
+
+    out.println("]");
+  }
+} // end-method
+
+/**
+ * print the fastest engine at each kernel/outer/inner/parallelism point
+ */
+private static void crossover(List<String[]> rows) {
+
+  Map<String, String[]> best = new LinkedHashMap<>();
+
+  for (String[] row : rows) {
+
+    String point = row[1] + "," + row[2] + "," + row[3] + "," + row[4];
+    String[] prior = best.get(point);
+
+    if  (prior == null || Long.parseLong(row[5]) < Long.parseLong(prior[5]))
+        best.put(point, row);
+  }
+
+  System.out.println("\nFastest engine per kernel,outerLoop,innerLoop,parallelism:");
+
+  for (Map.Entry<String, String[]> e : best.entrySet())
+    System.out.println(e.getKey() + "\t" + e.getValue()[0]);
+
+} // end-method
+} // end-class
@@ -0,0 +1,53 @@
+package test8;
+
+/**
+ * Thread-confined accumulator for the reduction mode (REDUCE).
+ *
+ * Each task adds its own (i, j) cells to its own PartialSum, partial sums
+ *   are merged only where tasks join or complete. The checksum is the same
+ *   sum of i + j the shared respository LongAdder collects otherwise, and
+ *   the work total keeps the result of the kernel instead of throwing it
+ *   away.
+ *
+ */
+public final class PartialSum {
+
+  private long checksum; // sum of i + j
+  private double work;   // sum of the kernel results
+  private long cells;    // (i, j) cells added
+
+/**
+ * add one cell
+ * @param i from top loop, j from bottom loop
+ * @param back result of the kernel
+ */
+void add(int i, int j, double back) {
+
+  checksum += i + j;
+  work     += back;
+  cells++;
+}
+
+/**
+ * fold another partial sum into this one
+ * @param other may be null
+ * @return this
+ */
+PartialSum merge(PartialSum other) {
+
+  if  (other != null) {
+
+      checksum += other.checksum;
+      work     += other.work;
+      cells    += other.cells;
+  }
+
+  return this;
+
+} // end-method
+
+long   getChecksum() { return checksum; }
+double getWork()     { return work; }
+long   getCells()    { return cells; }
+
+} // end-class
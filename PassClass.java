@@ -9,6 +9,9 @@ import java.util.concurrent.CountDownLatch;
 public class PassClass {
 
   private int i, j; // outer loop, inner loop
+  private int grain = 1; // inner loop indexes per fork, 0 = auto
+  private final long submitted = System.nanoTime(); // created just before asyncRequest()
+  private PartialSum[] sums; // REDUCE: one slot per outer loop, else null
   private CountDownLatch latch;
   
 public PassClass(int i, CountDownLatch latch) {
@@ -23,9 +26,24 @@ public PassClass(int i, int j, CountDownLatch latch) {
   this.j = j;
   this.latch = latch;
 }
+
+public PassClass(int i, int j, int grain, CountDownLatch latch) {
+  
+  this(i, j, latch);
+  this.grain = grain;
+}
+
+public PassClass(int i, int j, int grain, PartialSum[] sums, CountDownLatch latch) {
+  
+  this(i, j, grain, latch);
+  this.sums = sums;
+}
   
 public int getI () {return i; };
 public int getJ () {return j; };
+public int getGrain () {return grain; };
+public long getSubmitted () {return submitted; };
+public PartialSum[] getSums () {return sums; };
 public CountDownLatch  getLatch()  { return latch; }
 
 } // end-class
@@ -0,0 +1,297 @@
+package test8;
+
+/*
+ *
+ * Memory-mapped journal of the completed outer iterations of a run.
+ *
+ * Each completion is appended as one fixed size record to a file mapped
+ *   with MappedByteBuffers, so no per outer loop array grows on the heap
+ *   and the operating system writes the pages back on its own. The file
+ *   is sized for capacity records when the run starts.
+ *
+ * File layout, native byte order:
+ *   header, 64 bytes
+ *     0  long magic "NESTJRNL"
+ *     8  int  version
+ *    12  int  record bytes (32)
+ *    16  long capacity (records)
+ *    24  long records at a clean close, -1 while open or after a crash
+ *   records from byte 64, in completion order
+ *     0  int  mark, outer loop number + 1, 0 = not written
+ *     4  int  state, 1 completed, 2 completed and processed by the main thread
+ *     8  long value, the result of the outer iteration when the engine
+ *             has one (WaitMParallelLoops), else 0
+ *    16  long nanos, submit to complete
+ *    24  long id of the thread that wrote the record
+ *
+ * Many threads may append at once, each claims its own record. The mark
+ *   is written last with release semantics and read with acquire, so a
+ *   record with a mark is complete. A reader, in this JVM or another,
+ *   consumes the records as they arrive. After a crash every record with
+ *   a mark is still readable, the header says the run did not close.
+ *
+ * Run as a main it reads a journal:
+ *   java -cp . test8.ResultJournal nested.jnl         -- summary
+ *   java -cp . test8.ResultJournal nested.jnl -follow -- every record as
+ *                                                        it arrives, until closed
+ */
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only memory-mapped journal
+ *
+ */
+public final class ResultJournal implements AutoCloseable {
+
+  static final long MAGIC   = 0x4E4553544A524E4CL; // "NESTJRNL"
+  static final int  VERSION = 1;
+  static final int  HEADER  = 64;
+  static final int  RECORD  = 32;
+
+  // records per mapped segment, a MappedByteBuffer holds at most 2 GB
+  static final int  SEG_BITS = 24;
+  static final int  SEG_MASK = (1 << SEG_BITS) - 1;
+
+  private static final VarHandle INT =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+  private static final VarHandle LONG =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final MappedByteBuffer[] segments;
+  private final long capacity;
+  private final boolean writable;
+
+  private final AtomicLong next = new AtomicLong(); // next record to claim
+  private long read; // next record the reader returns
+
+private ResultJournal(Path file, long capacity, boolean writable) throws IOException {
+
+  this.writable = writable;
+
+  channel = (writable)
+      ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+      : FileChannel.open(file, StandardOpenOption.READ);
+
+  FileChannel.MapMode mode = (writable)? FileChannel.MapMode.READ_WRITE
+                                       : FileChannel.MapMode.READ_ONLY;
+
+  header = channel.map(mode, 0, HEADER);
+  header.order(ByteOrder.nativeOrder());
+
+  if  (writable) {
+      header.putLong(0, MAGIC);
+      header.putInt(8, VERSION);
+      header.putInt(12, RECORD);
+      header.putLong(16, capacity);
+      header.putLong(24, -1);
+  }
+  else {
+      if  (header.getLong(0) != MAGIC || header.getInt(8) != VERSION)
+          throw new IOException(file + " is not a result journal");
+
+      capacity = header.getLong(16);
+  }
+
+  this.capacity = capacity;
+
+  int n = (int) ((capacity + SEG_MASK) >>> SEG_BITS);
+  segments = new MappedByteBuffer[n];
+
+  for (int s = 0; s < n; s++) {
+
+    long first = (long) s << SEG_BITS;
+    long count = Math.min(capacity - first, 1L << SEG_BITS);
+
+    segments[s] = channel.map(mode, HEADER + first * RECORD, count * RECORD);
+  }
+} // end-constructor
+
+/**
+ * new journal, an existing file is replaced
+ * @param file
+ * @param capacity most records
+ * @return journal to append to
+ */
+static ResultJournal create(Path file, long capacity) throws IOException {
+
+  return new ResultJournal(file, Math.max(capacity, 1), true);
+} // end-method
+
+/**
+ * existing journal to read, also while it is written
+ * @param file
+ * @return journal to read
+ */
+static ResultJournal open(Path file) throws IOException {
+
+  return new ResultJournal(file, 0, false);
+} // end-method
+
+/**
+ * append one record, lock-free
+ * @param outer outer loop number
+ * @param state 1 completed, 2 processed
+ * @param value result of the outer iteration or 0
+ * @param nanos submit to complete
+ */
+void append(int outer, int state, long value, long nanos) {
+
+  long k = next.getAndIncrement();
+
+  if  (k >= capacity)
+      throw new IllegalStateException("journal full at " + capacity + " records");
+
+  MappedByteBuffer b = segments[(int) (k >>> SEG_BITS)];
+  int at = (int) (k & SEG_MASK) * RECORD;
+
+  INT.set(b, at + 4, state);
+  LONG.set(b, at + 8, value);
+  LONG.set(b, at + 16, nanos);
+  LONG.set(b, at + 24, Thread.currentThread().getId());
+
+  // last: the record is complete
+  INT.setRelease(b, at, outer + 1);
+
+} // end-method
+
+/**
+ * capacity in records
+ */
+long capacity() { return capacity; }
+
+/**
+ * is a record written
+ * @param k record number
+ */
+boolean committed(long k) { return mark(k) != 0; }
+
+int  outer(long k)  { return mark(k) - 1; }
+int  state(long k)  { return (int)  INT.get(segment(k), offset(k) + 4); }
+long value(long k)  { return (long) LONG.get(segment(k), offset(k) + 8); }
+long nanos(long k)  { return (long) LONG.get(segment(k), offset(k) + 16); }
+long thread(long k) { return (long) LONG.get(segment(k), offset(k) + 24); }
+
+private int mark(long k) { return (int) INT.getAcquire(segment(k), offset(k)); }
+
+private MappedByteBuffer segment(long k) { return segments[(int) (k >>> SEG_BITS)]; }
+private static int offset(long k)         { return (int) (k & SEG_MASK) * RECORD; }
+
+/**
+ * incremental read: the next record once it is written
+ * @return record number, -1 when the next one is not written yet
+ */
+long poll() {
+
+  if  (read >= capacity || !committed(read)) return -1;
+
+  return read++;
+} // end-method
+
+/**
+ * records at a clean close, -1 while open or after a crash
+ */
+long closedCount() { return (long) LONG.getAcquire(header, 24); }
+
+/**
+ * records written, counted by mark. With many writers a crash may leave
+ *   a hole, records after it are counted too.
+ */
+long count() {
+
+  long n = 0;
+
+  for (long k = 0; k < capacity; k++)
+    if  (committed(k)) n++;
+
+  return n;
+
+} // end-method
+
+/**
+ * write the pages back and, when writing, mark a clean close
+ */
+@Override
+public void close() throws IOException {
+
+  if  (writable) {
+
+      for (MappedByteBuffer b : segments)
+        b.force();
+
+      LONG.setRelease(header, 24, Math.min(next.get(), capacity));
+      header.force();
+  }
+
+  channel.close();
+
+} // end-method
+
+/**
+ * Read a journal
+ * @param args file [-follow]
+ */
+public static void main(String[] args) throws IOException, InterruptedException {
+
+  if  (args.length == 0) {
+      System.out.println("Usage: ResultJournal file [-follow]");
+      return;
+  }
+
+  boolean follow = args.length > 1 && args[1].equals("-follow");
+
+  try (ResultJournal j = open(Paths.get(args[0]))) {
+
+    if  (follow) {
+
+        // print records as they come until the writer closes
+        long k;
+
+        while (true) {
+
+          if  ((k = j.poll()) >= 0)
+              System.out.printf("%d\touter %d\tstate %d\tvalue %d\t%.3f ms\tthread %d\n",
+                                k, j.outer(k), j.state(k), j.value(k),
+                                j.nanos(k) / 1e6, j.thread(k));
+
+          else if (j.closedCount() >= 0 && j.read >= j.closedCount())
+              break;
+
+          else
+              Thread.sleep(1);
+        }
+    }
+
+    long n = j.count(), sum = 0, max = 0;
+    int  maxOuter = -1;
+
+    for (long k = 0; k < j.capacity(); k++)
+      if  (j.committed(k)) {
+
+          sum += j.value(k);
+
+          if  (j.nanos(k) > max) {
+              max = j.nanos(k);
+              maxOuter = j.outer(k);
+          }
+      }
+
+    System.out.println("Records: " + n + " of " + j.capacity()
+                       + ((j.closedCount() >= 0)? ", closed" : ", not closed (running or crashed)"));
+    System.out.println("Sum of values: " + sum);
+    System.out.printf("Slowest: outer %d, %.3f ms\n", maxOuter, max / 1e6);
+  }
+} // end-method
+} // end-class
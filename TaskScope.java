@@ -0,0 +1,124 @@
+package test8;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors and a structured fork-all for the virtual thread engine.
+ *
+ * The classes are built for JDK 11 since the Tymeac server needs
+ *   java.rmi.activation, so virtual threads are found at run time. On
+ *   JDK 21 or later the outer executor starts one virtual thread per
+ *   task, earlier it falls back to a fixed pool of platform threads, one
+ *   blocked platform thread per task would start a thread for every
+ *   outer loop number.
+ *
+ * StructuredTaskScope is a preview API, forkAll() gives the same
+ *   shutdown-on-failure shape: all subtasks are joined before return and
+ *   the first failure cancels the rest. It waits in completion order, so
+ *   a failure is seen as soon as its task ends, not after the tasks
+ *   submitted before it.
+ *
+ */
+public final class TaskScope {
+
+private TaskScope() {}
+
+/**
+ * one new thread per task, virtual when the JDK has them
+ * @param fallback platform threads when the JDK has no virtual threads
+ * @return executor, check hasVirtualThreads()
+ */
+static ExecutorService newThreadPerTaskExecutor(int fallback) {
+
+  try {
+    return (ExecutorService) MethodHandles.publicLookup()
+        .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class))
+        .invoke();
+  }
+  catch (Throwable e) {
+    return Executors.newFixedThreadPool(fallback, named("vt-outer-"));
+  }
+} // end-method
+
+/**
+ * does the JDK have virtual threads
+ */
+static boolean hasVirtualThreads() {
+
+  try {
+    Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    return true;
+  }
+  catch (NoSuchMethodException e) {
+    return false;
+  }
+} // end-method
+
+/**
+ * daemon threads named prefix + number
+ * @param prefix
+ * @return factory
+ */
+static ThreadFactory named(String prefix) {
+
+  AtomicInteger nbr = new AtomicInteger();
+
+  return r -> {
+    Thread t = new Thread(r, prefix + nbr.getAndIncrement());
+    t.setDaemon(true);
+    return t;
+  };
+} // end-method
+
+/**
+ * Run every task and wait for all of them, in the order they complete.
+ *   When one fails or the caller is interrupted the others are cancelled
+ *   before the exception is thrown.
+ * @param executor to run the tasks
+ * @param tasks
+ * @return results in task order
+ */
+static <T> List<T> forkAll(ExecutorService executor, List<? extends Callable<T>> tasks)
+    throws InterruptedException, ExecutionException {
+
+  CompletionService<T> done = new ExecutorCompletionService<>(executor);
+  List<Future<T>> futures = new ArrayList<>(tasks.size());
+  List<T> results = new ArrayList<>(tasks.size());
+
+  try {
+    for (Callable<T> task : tasks)
+      futures.add(done.submit(task));
+
+    // completion order: the first failure throws at once
+    for (int k = 0; k < futures.size(); k++)
+      done.take().get();
+
+    // all done, the results in task order
+    for (Future<T> f : futures)
+      results.add(f.get());
+  }
+  catch (InterruptedException | ExecutionException | RuntimeException e) {
+
+    for (Future<T> f : futures)
+      f.cancel(true);
+
+    throw e;
+  }
+
+  return results;
+
+} // end-method
+} // end-class
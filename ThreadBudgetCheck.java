@@ -0,0 +1,225 @@
+package test8;
+
+/*
+ *
+ * Thread budget regression check of the nested loop engines.
+ *
+ * paraLoops() can start about 10 times more ForkJoinWorkerThreads than
+ *   parallelism, since every worker blocked in a join may be compensated
+ *   by a new one. This check guards every engine against that: each engine
+ *   runs in its own JVM under a ThreadSampler and reports the most live
+ *   worker threads seen and its checksum.
+ *
+ * The check fails, exit code 1, when
+ *   peak live workers > multiple * parallelism for any engine, or
+ *   the checksum of any engine differs from its closed form, that is,
+ *   from every other engine. NestedParallel sums i + j over every cell,
+ *   WaitMParallelLoops (waitm, flow) sums i * j.
+ *
+ * Run it after adding an engine or moving to a new JDK.
+ *
+ * The Tymeac engines (tymeac, waitm, flow) need java.rmi.activation, gone
+ *   after JDK 16. On such a JDK they are skipped with a message, not failed.
+ *   Before JDK 21 the virtual engine runs on a pool of parallelism platform
+ *   threads, within the same budget.
+ *
+ * Peak workers are sampled, a thread that lives less than one interval
+ *   may be missed. The count of all threads the JVM started during the run
+ *   is printed next to it for that reason.
+ *
+ * Options (system properties):
+ *  budget.engines      -- engines to check (default all NestedBenchmark engines)
+ *  budget.parallelism  -- parallelism of every engine   (default 4)
+ *  budget.outerLoop    -- outer loop iterations          (default 100)
+ *  budget.innerLoop    -- inner loop iterations          (default 1000)
+ *  budget.multiple     -- allowed peak workers per unit of parallelism (default 2)
+ *  budget.multiple.ENGINE -- the same for one engine, e.g. budget.multiple.para=16
+ *  budget.sampleMillis -- sampling interval              (default 1)
+ *  nested.*            -- passed on to every engine (kernel, grain, REDUCE ...)
+ *  bench.jvmArgs       -- extra JVM options for each engine, space separated
+ *
+ * For example, to see the compensation of paraLoops():
+ *   java -cp .:TymeacDSELite.jar -Dbudget.engines=para,governed,managed
+ *        test8.ThreadBudgetCheck
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread budget and checksum check, one JVM per engine
+ *
+ */
+public class ThreadBudgetCheck {
+
+  static final String[] engines = NestedBenchmark.list("budget.engines",
+      "seq,para,tymeac,flat,virtual,managed,governed,split,completer,waitm,flow");
+
+  static final int parallelism  = Integer.getInteger("budget.parallelism", 4);
+  static final int outerLoop    = Integer.getInteger("budget.outerLoop", 100);
+  static final int innerLoop    = Integer.getInteger("budget.innerLoop", 1000);
+  static final int sampleMillis = Integer.getInteger("budget.sampleMillis", 1);
+
+/**
+ * Start of application
+ * @param args -child engine when running as an engine JVM
+ */
+public static void main(String[] args) throws Exception {
+
+  if  (args.length == 2 && args[0].equals("-child")) {
+
+      child(args[1]);
+      NestedBenchmark.stopServer(args[1]);
+      return;
+  }
+
+  System.out.println("outerLoop: " + outerLoop + " innerLoop: " + innerLoop
+                     + " parallelism: " + parallelism);
+  System.out.printf("%-10s %6s %6s %8s %14s  %s\n",
+                    "Engine", "peak", "budget", "started", "checksum", "result");
+
+  List<String> props = new ArrayList<>(nestedProps());
+  props.add("-Dnested.outerLoop="   + outerLoop);
+  props.add("-Dnested.innerLoop="   + innerLoop);
+  props.add("-Dnested.parallelism=" + parallelism);
+  props.add("-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + parallelism);
+  props.add("-Dnested.SAMPLE_MILLIS=0"); // the child samples the run itself
+  props.add("-Dbudget.sampleMillis=" + sampleMillis);
+
+  int failed = 0;
+
+  for (String engine : engines) {
+
+    if  (needsTymeac(engine) && !hasActivation()) {
+        System.out.printf("%-10s skipped, no java.rmi.activation on JDK %s\n",
+                          engine, System.getProperty("java.specification.version"));
+        continue;
+    }
+
+    String[] r = null;
+
+    for (String line : NestedBenchmark.launch(ThreadBudgetCheck.class, props, "-child", engine))
+      if  (line.startsWith(NestedBenchmark.RESULT))
+          r = line.split(" ");
+
+    if  (r == null) {
+        System.out.printf("%-10s no result, see the engine output  FAIL\n", engine);
+        failed++;
+        continue;
+    }
+
+    int  peak     = Integer.parseInt(r[1]);
+    long started  = Long.parseLong(r[2]);
+    long checksum = Long.parseLong(r[3]);
+    int  budget   = budget(engine);
+    long expected = expected(engine);
+
+    List<String> why = new ArrayList<>();
+
+    if  (peak > budget)        why.add("over budget");
+    if  (checksum != expected) why.add("checksum, expected " + expected);
+
+    System.out.printf("%-10s %6d %6d %8d %14d  %s\n", engine, peak, budget, started,
+                      checksum, (why.isEmpty())? "ok" : "FAIL " + String.join(", ", why));
+
+    if  (!why.isEmpty()) failed++;
+
+  } // end-for
+
+  System.out.println((failed == 0)? "All engines within budget"
+                                  : failed + " of " + engines.length + " engines failed");
+
+  System.exit((failed == 0)? 0 : 1);
+
+} // end-method
+
+/**
+ * most live workers allowed for an engine
+ * @param engine
+ * @return multiple * parallelism, rounded down
+ */
+static int budget(String engine) {
+
+  String m = System.getProperty("budget.multiple." + engine,
+                                System.getProperty("budget.multiple", "2"));
+
+  return (int) (Double.parseDouble(m) * parallelism);
+
+} // end-method
+
+/**
+ * does an engine run on the Tymeac server
+ * @param engine
+ */
+static boolean needsTymeac(String engine) {
+
+  return engine.equals("tymeac") || engine.equals("waitm") || engine.equals("flow");
+
+} // end-method
+
+/**
+ * does this JDK have java.rmi.activation, the Tymeac server needs it.
+ *   The engine JVMs run the same JDK as this one.
+ */
+static boolean hasActivation() {
+
+  try {
+    Class.forName("java.rmi.activation.Activatable");
+    return true;
+  }
+  catch (ClassNotFoundException e) {
+    return false;
+  }
+} // end-method
+
+/**
+ * checksum of a full run of an engine
+ * @param engine
+ * @return sum of i * j for WaitMParallelLoops, else sum of i + j
+ */
+static long expected(String engine) {
+
+  long sumI = (long) outerLoop * (outerLoop - 1) / 2;
+  long sumJ = (long) innerLoop * (innerLoop - 1) / 2;
+
+  if  (engine.equals("waitm") || engine.equals("flow"))
+      return sumI * sumJ;
+
+  return innerLoop * sumI + outerLoop * sumJ;
+
+} // end-method
+
+/**
+ * Run one engine within the forked JVM under the sampler
+ * @param engine
+ */
+private static void child(String engine) {
+
+  ThreadSampler sampler = new ThreadSampler(sampleMillis).start();
+
+  NestedBenchmark.runOnce(engine);
+
+  sampler.stop();
+
+  System.out.println(NestedBenchmark.RESULT + " "
+                     + sampler.peakWorkers() + " "
+                     + sampler.threadsStarted() + " "
+                     + NestedBenchmark.checksum(engine));
+} // end-method
+
+/**
+ * the nested.* options of this JVM, for the engines
+ */
+private static List<String> nestedProps() {
+
+  List<String> props = new ArrayList<>();
+
+  for (Map.Entry<Object, Object> e : System.getProperties().entrySet())
+    if  (e.getKey().toString().startsWith("nested."))
+        props.add("-D" + e.getKey() + "=" + e.getValue());
+
+  return props;
+
+} // end-method
+} // end-class
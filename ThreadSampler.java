@@ -0,0 +1,275 @@
+package test8;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Low overhead thread state sampler.
+ *
+ * A daemon thread takes a ThreadMXBean snapshot of every live thread each
+ *   interval and counts, per thread, the samples in each state. A sample
+ *   whose stack is inside a ForkJoinTask join is also counted as join,
+ *   split into helping (RUNNABLE) and parked waiting for the join.
+ *
+ * This gives the RUNNABLE/WAITING/BLOCKED ratios and the awaitJoin time
+ *   without attaching a profiler.
+ *
+ */
+public class ThreadSampler implements Runnable {
+
+  // thread names that are engine workers
+  static final String[] WORKER_PREFIXES = {"ForkJoinPool", "TyWorkThread", "vt-", "nested-"};
+
+  // frames that mean the thread is inside a fork/join join
+  static final String[] JOIN_FRAMES = {"awaitJoin", "awaitDone", "helpJoin",
+                                       "externalAwaitDone", "join"};
+
+  // stack depth to look for join frames
+  static final int DEPTH = 16;
+
+  private final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+  private final long interval; // millis
+  private final Map<Long, Stats> threads = new LinkedHashMap<>();
+
+  private volatile boolean running;
+  private Thread sampler;
+
+  private int  samples;     // snapshots taken
+  private int  peakWorkers; // most live workers in one snapshot
+  private long startedAtStart, startedAtEnd; // total started thread counts
+  private long begin, end;  // nanos
+
+  /**
+   * counts for one thread
+   */
+  static class Stats {
+
+    final String name;
+    int runnable, waiting, blocked, joinRun, joinWait, total;
+
+    Stats(String name) { this.name = name; }
+
+    double pct(int n) { return (total == 0)? 0 : 100.0 * n / total; }
+  } // end-inner-class
+
+/**
+ * @param intervalMillis time between snapshots
+ */
+public ThreadSampler(long intervalMillis) {
+
+  this.interval = Math.max(intervalMillis, 1);
+}
+
+/**
+ * start sampling on a daemon thread
+ * @return this
+ */
+public ThreadSampler start() {
+
+  startedAtStart = mx.getTotalStartedThreadCount();
+  begin   = System.nanoTime();
+  running = true;
+
+  sampler = new Thread(this, "ThreadSampler");
+  sampler.setDaemon(true);
+  sampler.start();
+
+  return this;
+
+} // end-method
+
+/**
+ * stop sampling and wait for the sampler to finish
+ * @return this
+ */
+public ThreadSampler stop() {
+
+  running = false;
+  sampler.interrupt();
+
+  try {
+    sampler.join();
+  }
+  catch (InterruptedException e) {
+    Thread.currentThread().interrupt();
+  }
+
+  end = System.nanoTime();
+  startedAtEnd = mx.getTotalStartedThreadCount();
+
+  return this;
+
+} // end-method
+
+@Override
+public void run() {
+
+  long self = Thread.currentThread().getId();
+
+  while (running) {
+
+    sample(self);
+
+    try {
+      Thread.sleep(interval);
+    }
+    catch (InterruptedException e) {
+      break;
+    }
+  } // end-while
+} // end-method
+
+/**
+ * one snapshot of all threads
+ * @param self sampler thread id, skipped
+ */
+private void sample(long self) {
+
+  ThreadInfo[] infos = mx.getThreadInfo(mx.getAllThreadIds(), DEPTH);
+  int workers = 0;
+
+  for (ThreadInfo info : infos) {
+
+    if  (info == null || info.getThreadId() == self) continue;
+
+    Stats s = threads.get(info.getThreadId());
+
+    if  (s == null) {
+        s = new Stats(info.getThreadName());
+        threads.put(info.getThreadId(), s);
+    }
+
+    if  (isWorker(s.name)) workers++;
+
+    s.total++;
+
+    Thread.State state = info.getThreadState();
+    boolean inJoin = inJoin(info.getStackTrace());
+
+    switch (state) {
+
+      case RUNNABLE:
+        s.runnable++;
+        if  (inJoin) s.joinRun++;
+        break;
+
+      case BLOCKED:
+        s.blocked++;
+        break;
+
+      default: // WAITING, TIMED_WAITING
+        s.waiting++;
+        if  (inJoin) s.joinWait++;
+        break;
+    }
+  } // end-for
+
+  samples++;
+  peakWorkers = Math.max(peakWorkers, workers);
+
+} // end-method
+
+/**
+ * is the stack within a fork/join join
+ */
+private static boolean inJoin(StackTraceElement[] stack) {
+
+  for (StackTraceElement e : stack) {
+
+    String cls = e.getClassName();
+
+    if  (!cls.startsWith("java.util.concurrent.ForkJoin")
+         && !cls.startsWith("java.util.concurrent.CountedCompleter"))
+        continue;
+
+    for (String f : JOIN_FRAMES)
+      if  (e.getMethodName().equals(f)) return true;
+  }
+
+  return false;
+
+} // end-method
+
+/**
+ * is this an engine worker thread
+ */
+static boolean isWorker(String name) {
+
+  for (String p : WORKER_PREFIXES)
+    if  (name.startsWith(p)) return true;
+
+  return false;
+
+} // end-method
+
+/**
+ * stats of every worker thread seen
+ */
+List<Stats> workers() {
+
+  List<Stats> list = new ArrayList<>();
+
+  for (Stats s : threads.values())
+    if  (isWorker(s.name)) list.add(s);
+
+  return list;
+
+} // end-method
+
+/**
+ * most live worker threads in any one snapshot
+ */
+int peakWorkers() { return peakWorkers; }
+
+/**
+ * threads the JVM started while sampling, all kinds
+ */
+long threadsStarted() { return startedAtEnd - startedAtStart; }
+
+/**
+ * print per thread ratios and the totals
+ * @param out
+ */
+public void report(PrintStream out) {
+
+  List<Stats> list = workers();
+  Stats all = new Stats("all workers");
+
+  out.printf("Thread sampling: %d samples every %d ms over %.3f s\n",
+             samples, interval, (end - begin) / 1e9);
+  out.printf("%-40s %7s %7s %7s %7s %7s %7s\n",
+             "Worker", "samples", "RUN%", "WAIT%", "BLOCK%", "JOINr%", "JOINw%");
+
+  for (Stats s : list) {
+
+    line(out, s);
+
+    all.total    += s.total;
+    all.runnable += s.runnable;
+    all.waiting  += s.waiting;
+    all.blocked  += s.blocked;
+    all.joinRun  += s.joinRun;
+    all.joinWait += s.joinWait;
+  }
+
+  line(out, all);
+
+  out.println("Worker threads seen   : " + list.size());
+  out.println("Peak live workers     : " + peakWorkers);
+  out.println("Threads started (all) : " + threadsStarted());
+
+} // end-method
+
+private static void line(PrintStream out, Stats s) {
+
+  out.printf("%-40s %7d %7.1f %7.1f %7.1f %7.1f %7.1f\n",
+             s.name, s.total, s.pct(s.runnable), s.pct(s.waiting), s.pct(s.blocked),
+             s.pct(s.joinRun), s.pct(s.joinWait));
+} // end-method
+} // end-class
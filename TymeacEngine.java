@@ -0,0 +1,183 @@
+package test8;
+
+/*
+ *
+ * Long-lived Tymeac engine handle and its cold vs warm measurement.
+ *
+ * The engine is started once, reused by every nested-loop job and shut
+ *   down cleanly with shutRequest(), no System.exit() needed. NestedParallel
+ *   and WaitMParallelLoops get their server from here.
+ *
+ * Run as a main it measures the lifecycle with type_run 3 jobs:
+ *   startup       -- createServer() of the internal server
+ *   first task    -- engine start until the first task's compute() runs
+ *   cold job      -- the first job, cold JIT and cold server
+ *   warm jobs     -- every later job, mean, min and max
+ *   shutdown      -- shutRequest() until it returns
+ *
+ * Options (system properties):
+ *  nested.jobs -- jobs to run, the first is the cold one (default 10)
+ *  nested.*    -- the NestedParallel options
+ */
+
+import java.rmi.RemoteException;
+
+import com.tymeac.dse.base.InternalServer;
+import com.tymeac.dse.base.TymeacInterface;
+
+/**
+ * Reusable Tymeac engine
+ *
+ */
+public final class TymeacEngine implements AutoCloseable {
+
+  static final long NPS = (1000L * 1000 * 1000); // for timing
+
+  static final int jobs = Integer.getInteger("nested.jobs", 10);
+
+  // nanoTime() the first task of the current engine ran, 0 = none yet
+  private static volatile long firstTask;
+
+  private final InternalServer server;
+  private final TymeacInterface ti;
+  private final long began;   // nanoTime() start() was called
+  private final long startup; // nanos of createServer()
+  private volatile boolean open;
+
+private TymeacEngine(int threads) {
+
+  // passed args when starting server
+  String[] in = {"-threads", // use threads override (default currently 4)
+                 "" + threads, // this many threads
+                 "-no",      // no verbose - comment line for start up messages
+                 "-s"        // stand-a-lone mode (no DB)
+                };
+
+  firstTask = 0;
+  began     = System.nanoTime();
+
+  server = new InternalServer(); // internal, no RMI/IIOP etc
+  ti     = server.createServer(in); // start the server with above args
+
+  startup = System.nanoTime() - began;
+
+  if  (ti == null)
+      throw new IllegalStateException("createServer failed");
+
+  open = true;
+
+} // end-constructor
+
+/**
+ * start an engine
+ * @param threads Tymeac threads
+ * @return the started engine
+ */
+static TymeacEngine start(int threads) {
+
+  return new TymeacEngine(threads);
+} // end-method
+
+/**
+ * the server to submit requests to
+ */
+TymeacInterface tymeac() {
+
+  if  (!open) throw new IllegalStateException("engine is shut down");
+  return ti;
+}
+
+boolean isOpen() { return open; }
+
+/**
+ * nanos createServer() took
+ */
+long startupNanos() { return startup; }
+
+/**
+ * nanos from start() to the first task, -1 when no task ran yet
+ */
+long firstTaskNanos() {
+
+  long t = firstTask;
+  return (t == 0)? -1 : t - began;
+}
+
+/**
+ * called by every task when it starts, only the first call counts
+ */
+static void taskStarted() {
+
+  if  (firstTask == 0) firstTask = System.nanoTime();
+}
+
+/**
+ * shut the server down, the engine may not be used after
+ */
+@Override
+public void close() {
+
+  if  (!open) return;
+
+  open = false;
+
+  try {
+    ti.shutRequest();
+  }
+  catch (RemoteException e) {
+    throw new IllegalStateException("shutRequest failed", e);
+  }
+} // end-method
+
+/**
+ * Start of application: one engine, jobs runs, cold vs warm
+ * @param args
+ */
+public static void main(String[] args) {
+
+  System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism",
+                     Integer.toString(NestedParallel.parallelism));
+
+  NestedParallel np = new NestedParallel();
+
+  long t0 = System.nanoTime();
+
+  // cold: starts the engine, first task, first job
+  np.runLoops(NestedParallel.ty_run);
+
+  long deploy = System.nanoTime() - t0;
+  long cold   = NestedParallel.end - NestedParallel.start;
+  long sum = 0, min = Long.MAX_VALUE, max = 0;
+
+  // warm: same engine
+  for (int k = 1; k < jobs; k++) {
+
+    np.runLoops(NestedParallel.ty_run);
+
+    long nanos = NestedParallel.end - NestedParallel.start;
+    sum += nanos;
+    min = Math.min(min, nanos);
+    max = Math.max(max, nanos);
+  }
+
+  TymeacEngine engine = NestedParallel.engine;
+
+  System.out.printf("Startup (createServer)  : %12.6f s\n", (double) engine.startupNanos() / NPS);
+  System.out.printf("Time to first task      : %12.6f s\n", (double) engine.firstTaskNanos() / NPS);
+  System.out.printf("Cold job                : %12.6f s\n", (double) cold / NPS);
+  System.out.printf("Deploy (start + cold)   : %12.6f s\n", (double) deploy / NPS);
+
+  if  (jobs > 1)
+      System.out.printf("Warm jobs (%d) mean/min/max : %.6f / %.6f / %.6f s\n",
+                        jobs - 1, (double) sum / (jobs - 1) / NPS,
+                        (double) min / NPS, (double) max / NPS);
+
+  System.out.println("Total: " + NestedParallel.checksum());
+
+  long s0 = System.nanoTime();
+  NestedParallel.stopServer();
+
+  System.out.printf("Shutdown                : %12.6f s\n", (double) (System.nanoTime() - s0) / NPS);
+
+} // end-method
+} // end-class
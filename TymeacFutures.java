@@ -0,0 +1,51 @@
+package test8;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.tymeac.dse.base.TymeacInterface;
+import com.tymeac.dse.base.TymeacParm;
+import com.tymeac.dse.base.TymeacReturn;
+
+/**
+ * One CompletableFuture per Tymeac async request.
+ *
+ * The request runs WaitMAsyncTask. Its complete() hands the sum of the
+ *   inner loop to the future instead of to the static
+ *   WaitMParallelLoops.post(), so no shared state is involved.
+ *
+ */
+public final class TymeacFutures {
+
+private TymeacFutures() {}
+
+/**
+ * submit one outer loop iteration
+ * @param ti started server
+ * @param i outer loop number
+ * @param innerLoop inner loop tasks
+ * @param grain j per fork, 0 = auto
+ * @return future of the sum of the inner loop
+ */
+static CompletableFuture<Long> submit(TymeacInterface ti, int i, int innerLoop, int grain) {
+
+  CompletableFuture<Long> future = new CompletableFuture<>();
+
+  TymeacParm tp = new TymeacParm(WaitMAsyncTask.class,
+                                 new WaitMPassClass(i, innerLoop, grain, future::complete));
+
+  try {
+    TymeacReturn back = ti.asyncRequest(tp);
+
+    // When any invalid return, fail the future
+    if  (back.getReturnCode() != 0)
+        future.completeExceptionally(
+            new IllegalStateException("asyncRequest RC=" + back.getReturnCode()));
+
+  } catch (Exception e) {
+    future.completeExceptionally(e);
+  } // end-catch
+
+  return future;
+
+} // end-method
+} // end-class
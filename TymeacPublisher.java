@@ -0,0 +1,215 @@
+package test8;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tymeac.dse.base.TymeacInterface;
+
+/**
+ * Flow.Publisher of Tymeac async request results.
+ *
+ * Each outer loop number is submitted as one async request through
+ *   TymeacFutures, and its result is pushed to the subscriber as soon as
+ *   the request completes. Completion order, not submission order.
+ *
+ * Backpressure is by demand. A request is only submitted while the
+ *   requests in flight are fewer than the items the subscriber has asked
+ *   for, so a slow subscriber also slows submission.
+ *
+ * One subscriber per publisher. Delivery, submission and the terminal
+ *   signal all run in drain(), which is serialized by a work-in-progress
+ *   counter, so the subscriber is never called concurrently.
+ *
+ */
+public class TymeacPublisher implements Flow.Publisher<TymeacPublisher.Result> {
+
+  private final TymeacInterface ti;
+  private final int count;     // outer loop numbers to submit
+  private final int[] outers;  // those numbers in order, null for 0 .. count-1
+  private final int innerLoop;
+  private final int grain;
+
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  /**
+   * result of one async request
+   */
+  public static final class Result {
+
+    final int outer;       // outer loop number
+    final long accum;      // sum of the inner loop
+    final long submitted;  // nanoTime() of the asyncRequest()
+    final long completed;  // nanoTime() of the complete()
+
+    Result(int outer, long accum, long submitted, long completed) {
+
+      this.outer     = outer;
+      this.accum     = accum;
+      this.submitted = submitted;
+      this.completed = completed;
+    }
+
+    public int  getOuter()     { return outer; }
+    public long getAccum()     { return accum; }
+    public long getSubmitted() { return submitted; }
+    public long getCompleted() { return completed; }
+  } // end-inner-class
+
+/**
+ * @param ti started server
+ * @param count outer loop numbers to submit
+ * @param outers those numbers in order, null for 0 .. count-1
+ * @param innerLoop inner loop tasks per request
+ * @param grain j per fork, 0 = auto
+ */
+public TymeacPublisher(TymeacInterface ti, int count, int[] outers, int innerLoop, int grain) {
+
+  this.ti        = ti;
+  this.count     = (outers != null)? outers.length : count;
+  this.outers    = (outers != null)? outers.clone() : null;
+  this.innerLoop = innerLoop;
+  this.grain     = grain;
+}
+
+@Override
+public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+
+  if  (!subscribed.compareAndSet(false, true)) {
+
+      subscriber.onSubscribe(new Flow.Subscription() {
+        public void request(long n) {}
+        public void cancel() {}
+      });
+      subscriber.onError(new IllegalStateException("TymeacPublisher allows one subscriber"));
+      return;
+  }
+
+  Subscription s = new Subscription(subscriber);
+  subscriber.onSubscribe(s);
+  s.drain();
+
+} // end-method
+
+  /**
+   * state of the one subscription
+   */
+  private class Subscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super Result> subscriber;
+    private final ConcurrentLinkedQueue<Result> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable error; // first failure
+
+    // only touched within drain()
+    private int submitted, delivered;
+    private boolean done;
+
+    Subscription(Flow.Subscriber<? super Result> subscriber) {
+
+      this.subscriber = subscriber;
+    }
+
+  @Override
+  public void request(long n) {
+
+    if  (n <= 0) 
+        fail(new IllegalArgumentException("request(" + n + "), must be positive"));
+    else {
+        // add, capped at Long.MAX_VALUE
+        requested.accumulateAndGet(n, (a, b) -> (a + b < 0)? Long.MAX_VALUE : a + b);
+    }
+
+    drain();
+
+  } // end-method
+  
+  /**
+   * keep the first failure, drain() signals it
+   */
+  private void fail(Throwable e) {
+    
+    if  (error == null) error = e;
+  }
+
+  @Override
+  public void cancel() {
+
+    cancelled = true;
+    drain();
+  }
+
+  /**
+   * deliver ready results, submit more to meet demand, finish when all
+   *   are delivered. Any thread may call, one at a time runs.
+   */
+  private void drain() {
+
+    if  (wip.getAndIncrement() != 0) return;
+
+    do {
+      if  (done) {
+          ready.clear();
+          continue;
+      }
+
+      if  (error != null) {
+          done = true;
+          ready.clear();
+          subscriber.onError(error);
+          continue;
+      }
+
+      // deliver completed results while there is demand
+      while (!cancelled && requested.get() > 0 && !ready.isEmpty()) {
+
+        requested.decrementAndGet();
+        delivered++;
+        subscriber.onNext(ready.poll());
+
+      } // end-while
+
+      if  (cancelled) {
+          done = true;
+          ready.clear();
+          continue;
+      }
+
+      // submit while the requests in flight are fewer than the demand
+      while (submitted < count && (submitted - delivered) < requested.get()) {
+        submit((outers != null)? outers[submitted] : submitted);
+        submitted++;
+      }
+
+      if  (delivered == count) {
+          done = true;
+          subscriber.onComplete();
+      }
+
+    } while (wip.decrementAndGet() != 0);
+
+  } // end-method
+
+  /**
+   * one async request, its result or failure re-enters drain()
+   */
+  private void submit(int i) {
+
+    long at = System.nanoTime();
+
+    TymeacFutures.submit(ti, i, innerLoop, grain).whenComplete((accum, e) -> {
+
+      if  (e != null)
+          fail(e);
+      else
+          ready.offer(new Result(i, accum, at, System.nanoTime()));
+      
+      drain();
+    });
+  } // end-method
+  } // end-inner-class
+} // end-class
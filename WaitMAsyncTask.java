@@ -1,5 +1,6 @@
 package test8;
 
+import java.util.function.LongConsumer;
 
 import com.tymeac.dse.base.Task;
 
@@ -17,17 +18,27 @@ public class WaitMAsyncTask extends Task {
    */
   private class PassToJ {
   
-    private int i, j;
+    private int i, j, jEnd; // outer loop, inner loop range j .. jEnd-1
     private long accum;
+    private long submitted; // nanoTime() of the outer asyncRequest()
+    private long forked = System.nanoTime();
+    private LongConsumer done; // outer request result, null to post()
     
-  protected PassToJ (int i, int j) {
+  protected PassToJ (int i, int j, int jEnd, long submitted, LongConsumer done) {
     
     this.i  = i;
     this.j  = j;
+    this.jEnd  = jEnd;
+    this.submitted = submitted;
+    this.done = done;
   }
   
   protected int getI() { return i; }
   protected int getJ() { return j; }
+  protected int getJEnd() { return jEnd; }
+  protected long getSubmitted() { return submitted; }
+  protected long getForked() { return forked; }
+  protected LongConsumer getDone() { return done; }
   protected long getAccum() { return accum; }
   protected void setAccum(long a) { accum = a; }
   
@@ -40,6 +51,8 @@ public class WaitMAsyncTask extends Task {
 @Override
 public Object compute() {   
   
+  TymeacEngine.taskStarted();
+  
   Object obj = getInput();
   
   if  (obj == null) {       
@@ -48,15 +61,32 @@ public Object compute() {
     return null;
   }
   
+  // PACKED payloads
+  if  (obj instanceof PackedArena.Cell)  return packedChunk((PackedArena.Cell) obj);
+  if  (obj instanceof PackedArena.Outer) return packedOuter((PackedArena.Outer) obj);
+  
   // When a forked object
    if  (obj instanceof PassToJ) {
      
        PassToJ toJ = (PassToJ) obj;
        int     myI = toJ.getI();
        int     myJ = toJ.getJ();
+       int     end = toJ.getJEnd();
+       long    sum = 0;
+       
+       NestedInnerEvent e = new NestedInnerEvent();
+       e.begin();
+       long began = System.nanoTime();
+       
+       // do actual work in lower nested loop, one chunk of j, until stopped
+       for (int j = myJ; j < end && !Deadline.stopped(); j++) {
+         sum += WaitMParallelLoops.uselessWork(myI, j);
+         Deadline.done(myI, j);
+       }
+       
+       toJ.setAccum(sum);
        
-       // do actual work in lower nested loop
-       toJ.setAccum(WaitMParallelLoops.uselessWork(myI, myJ));
+       e.done("waitm", myI, myJ, end - myJ, toJ.getForked(), began);
               
        return toJ;     
      
@@ -68,27 +98,190 @@ public Object compute() {
   
   WaitMPassClass myPass = (WaitMPassClass) obj;
   
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
   int local_I = myPass.getI(); // outer loop number
   int local_j = myPass.getJ(); // total inner loop tasks 
+  int grain   = myPass.getGrain(); // j per fork
+  long submitted = myPass.getSubmitted();
+  LongConsumer done = myPass.getDone();
   
   int nbr_forks = local_j - 1; // will do last computation in this thread  
+  long unit = 0; // nanos per j, automatic grain only
+  
+  PassToJ local = new PassToJ(local_I, nbr_forks, local_j, submitted, done);
+  
+  // automatic grain: do last one first and time it, i*j grows with j
+  //   so the average over the inner loop is about half of it
+  if  (grain == GrainSize.AUTO) {
+    
+      long t0 = System.nanoTime();
+      local.setAccum(lastOne(local_I, nbr_forks));
+      unit = (System.nanoTime() - t0) / 2;
+  }
+  
+  int chunk = GrainSize.chunk(grain, unit, nbr_forks);
+  int forks = 0;
+  long f0 = System.nanoTime();
       
-  // fork nested tasks
-  for (int j = 0; j < nbr_forks; j++) {
+  // fork nested tasks until stopped
+  for (int j = 0; j < nbr_forks && !Deadline.stopped(); j += chunk) {
     
     // create each task, except last to do the lower level work
-    if  (fork(new PassToJ(local_I, j)) != 0) return null;
+    if  (fork(new PassToJ(local_I, j, Math.min(j + chunk, nbr_forks), submitted, done)) != 0) return null;
+    forks++;
     
   } // end-for 
   
+  GrainSize.recordForks(System.nanoTime() - f0, forks);
+  
   // do last one here
-  PassToJ local = new PassToJ(local_I, nbr_forks);
-  local.setAccum(WaitMParallelLoops.uselessWork(local_I, nbr_forks));
+  if  (grain != GrainSize.AUTO)
+      local.setAccum(lastOne(local_I, nbr_forks));
+  
+  e.done("waitm", "compute", local_I, submitted, began);
   
   return local;
   
 } // end-method
 
+/**
+ * PACKED outer task: same as for a WaitMPassClass, forks preallocated 
+ *   cells, the result of the last index goes to its own slot
+ * @param outer
+ * @return outer for complete()
+ */
+private Object packedOuter(PackedArena.Outer outer) {
+  
+  PackedArena a = PackedArena.current();
+  
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  int i = outer.i;
+  int nbr_forks = a.innerLoop - 1; // will do last computation in this thread  
+  long unit = 0; // nanos per j, automatic grain only
+  
+  if  (a.grain == GrainSize.AUTO) {
+    
+      long t0 = System.nanoTime();
+      a.results[a.localSlot(i)] = lastOne(i, nbr_forks);
+      unit = (System.nanoTime() - t0) / 2;
+  }
+  
+  int chunk = GrainSize.chunk(a.grain, unit, nbr_forks);
+  a.chunks[i] = chunk;
+  
+  // fork nested tasks until stopped, the key says which chunk
+  int f = 0;
+  long f0 = System.nanoTime();
+  
+  for (int j = 0; j < nbr_forks && !Deadline.stopped(); j += chunk) {
+    
+    PackedArena.Cell c = a.cell(i, f++);
+    c.key = FlatSpliterator.pack(i, j);
+    c.forked = System.nanoTime();
+    
+    if  (fork(c) != 0) return null;
+    
+  } // end-for  
+  
+  GrainSize.recordForks(System.nanoTime() - f0, f);
+  
+  // do last one here
+  if  (a.grain != GrainSize.AUTO)
+      a.results[a.localSlot(i)] = lastOne(i, nbr_forks);
+  
+  e.done("waitm", "compute", i, outer.submitted, began);
+  
+  return outer;
+  
+} // end-method
+
+/**
+ * PACKED forked task: one chunk of j, sum to the cell's slot
+ * @param c 
+ * @return the cell for complete()
+ */
+private static Object packedChunk(PackedArena.Cell c) {
+  
+  PackedArena a = PackedArena.current();
+  
+  int i   = FlatSpliterator.outer(c.key);
+  int j   = FlatSpliterator.inner(c.key);
+  int end = a.chunkEnd(i, j);
+  long sum = 0;
+  
+  NestedInnerEvent e = new NestedInnerEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  for (int k = j; k < end && !Deadline.stopped(); k++) {
+    sum += WaitMParallelLoops.uselessWork(i, k);
+    Deadline.done(i, k);
+  }
+  
+  e.done("waitm", i, j, end - j, c.forked, began);
+  
+  a.results[c.index] = sum;
+  
+  return c;
+  
+} // end-method
+
+/**
+ * the last inner loop index, done by the outer task itself
+ * @return result, 0 when stopped
+ */
+private static long lastOne(int i, int j) {
+  
+  if  (Deadline.stopped()) return 0;
+  
+  long back = WaitMParallelLoops.uselessWork(i, j);
+  Deadline.done(i, j);
+  
+  return back;
+  
+} // end-method
+
+/**
+ * PACKED complete(): sum the slots of every output
+ * @param obj outputs, cells and the outer
+ */
+private static void packedComplete(Object[] obj) {
+  
+  PackedArena a = PackedArena.current();
+  
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
+  long accum = 0;
+  int  i = -1;
+  
+  for (Object o : obj) {
+    
+    if  (o instanceof PackedArena.Cell) {
+      
+        PackedArena.Cell c = (PackedArena.Cell) o;
+        accum += a.results[c.index];
+        i = FlatSpliterator.outer(c.key);
+    }
+    else {
+        i = ((PackedArena.Outer) o).i;
+        accum += a.results[a.localSlot(i)];
+    }
+  } // end-for
+  
+  WaitMParallelLoops.post(accum, i, a.outers[i].submitted);
+  
+  e.done("waitm", "complete", i, a.outers[i].submitted, began);
+  
+} // end-method
+
 /**
  * all tasks have completed, tell initiator this async request completed
  */
@@ -96,10 +289,21 @@ public Object compute() {
 public Object complete() {   
   
   Object[] obj = getOutput();
+  
+  // PACKED: the outputs are cells and the outer
+  if  (obj[0] instanceof PackedArena.Cell || obj[0] instanceof PackedArena.Outer) {
+    
+      packedComplete(obj);
+      return null;
+  }
     
   if (!(obj[0] instanceof PassToJ)) 
     throw new IllegalArgumentException("WaitMAsyncTask.complete(): Expecting Class PassToJ");
   
+  NestedOuterEvent e = new NestedOuterEvent();
+  e.begin();
+  long began = System.nanoTime();
+  
   int len = obj.length;
     
   long accum = 0;
@@ -108,10 +312,17 @@ public Object complete() {
   for (int i = 0; i < len; i++)   
     accum += ((PassToJ) obj[i]).getAccum();   
   
+  LongConsumer done = ((PassToJ)obj[0]).getDone();
+  
   // say work done for this async request
   //  the sum
   //  the outer loop number (same for all tasks so [0] is ok)
-  WaitMParallelLoops.post(accum, ((PassToJ)obj[0]).getI());  
+  if  (done != null)
+      done.accept(accum);
+  else
+      WaitMParallelLoops.post(accum, ((PassToJ)obj[0]).getI(), ((PassToJ)obj[0]).getSubmitted());  
+  
+  e.done("waitm", "complete", ((PassToJ)obj[0]).getI(), ((PassToJ)obj[0]).getSubmitted(), began);
   
   return null;  
   
@@ -15,10 +15,46 @@ package test8;
  *  outerLoop -- iterations in outer loop
  *  innerLoop -- iterations in inner loop
  *  parallelism -- override default Tymeac parallelism level
+ *  grain -- inner loop indexes per Tymeac fork, 0 picks it from the
+ *             measured fork overhead
+ *  PACKED -- payloads preallocated before the run, (i, j) packed in a 
+ *             long, no allocation per fork or per submission
+ *  FLOW  -- consume the async results through a Flow.Publisher
+ *  FLOW_DEMAND -- results the FLOW subscriber asks for ahead
+ *  SAMPLE_MILLIS -- thread state sampling interval, 0 for none
+ *  deadlineMillis -- stop starting work this long after each run starts,
+ *             the run reports the (i, j) cells it finished, 0 for none
+ *  order -- submission order by estimated cost: index, shortest (first)
+ *             for the lowest mean time to a result or longest (first) 
+ *             for the shortest makespan. Each parallel run reports both.
+ *  window -- most requests in flight, submission processes completions
+ *             until one is free past that, 0 for no limit. The FLOW run
+ *             is bounded by FLOW_DEMAND instead.
+ *  journal -- file the results of the parallel run are appended to as
+ *             they are processed, see ResultJournal. No per outer loop
+ *             arrays are kept then.
+ *  kernel -- work per (i, j) cell: cpu, memory, alloc, blocking or file,
+ *             see Kernel
+ *  
+ * Options may also be set as system properties, -Dnested.outerLoop=400 etc.
+ *  
+ * Each parallel run reports p50/p99/p99.9/max of two latencies per outer
+ *   request: submit to complete() and complete() to processed by the main
+ *   thread.
  *  
  */
 
-import com.tymeac.dse.base.InternalServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.LockSupport;
+
+import jdk.jfr.FlightRecorder;
+
 import com.tymeac.dse.base.Task;
 import com.tymeac.dse.base.TymeacInterface;
 import com.tymeac.dse.base.TymeacParm;
@@ -57,48 +93,122 @@ import com.tymeac.dse.base.TymeacReturn;
  *   
  *   What we need here is for the main thread to awaken each time an async
  *   process completes its work (async Task.complete()).
- *   The complete() calls WaitMParallelLoops.post(). The post() sets the
- *   event for that async request, saves the work-to-do and wakes up the 
- *   main thread. The main thread can process that work and then
- *   re-issue a wait().
+ *   The complete() calls WaitMParallelLoops.post(). The post() adds the
+ *   result of that async request to a lock-free completion queue and, 
+ *   when the main thread is parked, unparks it. The main thread drains
+ *   only the newly completed results and parks again.
  * 
  */
 public class WaitMParallelLoops {
   
   static final long NPS = (1000L * 1000 * 1000); // for timing
   
-  static InternalServer s;
+  static TymeacEngine engine;
   static TymeacInterface ti;
   static TymeacParm TP;
   
   static long start, end;
   
-  static Object waitM = new Object(); // object to wait/post
-  static volatile boolean awaken = false; // for the wait()
+  /*
+   * completed async requests, offered by the Tymeac threads in post() and
+   * polled by the main thread in process()
+   */
+  static final ConcurrentLinkedQueue<Completion> completions = new ConcurrentLinkedQueue<>();
+  
+  // the main thread while it is about to park, otherwise null
+  static volatile Thread waiter = null;
+	
+	static final int outerLoop = Integer.getInteger("nested.outerLoop", 200);	 // adjust for your needs
+	static final int innerLoop = Integer.getInteger("nested.innerLoop", 2000); // adjust for your needs
+	static final int parallelism = Integer.getInteger("nested.parallelism", 8);	 // parallelism for Tymeac
+	static final int grain = Integer.getInteger("nested.grain", 1);	 // j per Tymeac fork, 0 = auto
+	
+	// payloads from a PackedArena allocated before timing
+	static final boolean PACKED = Boolean.getBoolean("nested.PACKED");
+	
+	// parallel run through a Flow.Publisher instead of post()/process()
+	static final boolean FLOW = Boolean.getBoolean("nested.FLOW");
+	
+	// submission order by estimated cost, see CostSpliterator.order()
+	static final String ORDER = System.getProperty("nested.order", "index");
+	
+	// per outer request: run start to processed by the main thread
+	static final LatencyHistogram startToResult = new LatencyHistogram("Run start to result per outer");
+	
+	// most requests submitted and not yet processed, 0 for no limit
+	static final int window = Integer.getInteger("nested.window", 0);
+	
+	// most requests in flight during the last tymeacLoops() run
+	static int peakInFlight;
+	
+	// the main thread was interrupted while it waited, restored after the run
+	private boolean interrupted;
+	
+	// results a FLOW subscriber asks for ahead, bounds the requests in flight
+	static final int FLOW_DEMAND = Integer.getInteger("nested.FLOW_DEMAND", parallelism * 4);
+	
+	// thread state sampling interval for the parallel run, 0 for none
+	static final int SAMPLE_MILLIS = Integer.getInteger("nested.SAMPLE_MILLIS", 10);
+	
+	// stop starting work this long after the run starts, see Deadline
+	static final long deadlineMillis = Long.getLong("nested.deadlineMillis", 0);
+	
+	// results of the parallel run to a memory-mapped file instead of the
+	//   outerStore and events arrays, null for none
+	static final String JOURNAL = System.getProperty("nested.journal");
+	
+	// journal of the current parallel run, null for none
+	static ResultJournal journal;
+	
+	// work per cell, see Kernel
+	static final Kernel KERNEL = Kernel.named(System.getProperty("nested.kernel", "cpu"));
 	
-	static final int outerLoop = 200;	 // adjust for your needs
-	static final int innerLoop = 2000; // adjust for your needs
-	static final int parallelism = 8;	 // parallelism for Tymeac
+	// per outer request: asyncRequest() to complete(), complete() to process()
+	static final LatencyHistogram submitToComplete  = new LatencyHistogram("Submit to complete per outer");
+	static final LatencyHistogram completeToProcess = new LatencyHistogram("Complete to processed per outer");
 	
-	// count down integer decremented in sync{} in post()
-	static int outerCount = outerLoop; 
+	// the first event sets up Flight Recorder, not within a timed run
+	static {
+	  FlightRecorder.register(NestedOuterEvent.class);
+	  FlightRecorder.register(NestedInnerEvent.class);
+	}
 	
 	static long seqCount = 0; // final seq count
 	static long parCount = 0;//  final parallel count
 		
 	/*
-	 * each async request places its completion here in sync{}	 
+	 * each async request places its completion here in post(), not kept
+	 * with a journal
 	 */
-	static long[] outerStore = new long[outerLoop];
+	static long[] outerStore = (JOURNAL == null)? new long[outerLoop] : null;
 	
 	/*
    * These are the event indicators for each async request.
    * The async task.complete() code sets its event to 1 by calling static
-   * WaitMParallelLoops.post() [field updated in sync{}].
-   * When the main thread processes the event, it sets the
-   * event to 2 (nice for debugging.) 
+   * WaitMParallelLoops.post(). When the main thread processes the event,
+   * it sets the event to 2 (nice for debugging.) Both are written before
+   * the completion is queued or after it is polled, so the queue orders them. 
+   * With a journal the processed state is in the journal record instead.
    */
-  static int[] events = new int[outerLoop];
+  static int[] events = (JOURNAL == null)? new int[outerLoop] : null;
+  
+  /**
+   * one completed async request
+   */
+  static final class Completion {
+    
+    final int position; // outer loop number
+    final long accum;   // sum of the async request
+    final long submitted; // nanoTime() of the asyncRequest()
+    final long completed = System.nanoTime(); // of the post()
+    
+    Completion(int position, long accum, long submitted) {
+      
+      this.position  = position;
+      this.accum     = accum;
+      this.submitted = submitted;
+    }
+  } // end-inner-class
 
 /**
  * Start of application
@@ -107,79 +217,165 @@ public class WaitMParallelLoops {
 public static void main(String[] args) {
       
   System.out.println("Parallelism level: " + parallelism);
+  System.out.println("Kernel: " + KERNEL);
       
 	new WaitMParallelLoops().nestedLoops();
 	
-	//System.exit(0); 
+	stopServer();
 } // end-method
 
 /**
  * Loops
  */
-private void nestedLoops() {
+void nestedLoops() {
   
   // do the work sequentially (this will take a loooong time)
   seqLoops();    
   
   System.out.println("Total sequential count:" + seqCount);
+  partial();
 
   double elapsed = (double)(end - start) / NPS;
   System.out.printf("Elapsed sequential time : %5.9f\n", elapsed);
         
-  // do the work in parallel with Tymeac
-  tymeacLoops();     
+  // do the work in parallel with Tymeac, sample thread states
+  ThreadSampler sampler = (SAMPLE_MILLIS > 0)? new ThreadSampler(SAMPLE_MILLIS).start() : null;
+  
+  if  (FLOW)
+      flowLoops();
+  else
+      tymeacLoops();     
+  
+  if  (sampler != null) sampler.stop().report(System.out);
   
   System.out.println("Total parallel count:" + parCount);
+  partial();
+  
+  if  (!FLOW)
+      System.out.println("Most requests in flight: " + peakInFlight 
+                         + ((window > 0)? " (window " + window + ")" : " (no window)"));
+  
+  submitToComplete.report(System.out);
+  completeToProcess.report(System.out);
+  
+  System.out.printf("Order %s: mean time to result %.3f ms, makespan %.3f ms\n",
+                    ORDER, startToResult.mean() / 1e6, (double) (end - start) / 1e6);
   
   elapsed = (double)(end - start) / NPS;
   System.out.printf("Elapsed parallel time   : %5.9f\n", elapsed);
 
 } // end-method
 
+/**
+ * print what a run stopped by its deadline finished
+ */
+private static void partial() {
+  
+  Deadline d = Deadline.current();
+  
+  if  (d.timed() && d.completed() < d.cells()) 
+      System.out.println("Deadline passed, partial result. Cells done: " + d.completed() 
+                         + " of " + d.cells() + ", outer loops done: " + d.outersCompleted());
+  
+  else if (!d.timed() && d.expired())
+      System.out.println("Run cancelled, partial result");
+} // end-method
+
+/**
+ * Tymeac server setup, only the first call starts the engine, repeated 
+ *   runs reuse it until stopServer()
+ */
+static void startServer() {
+  
+  if  (engine == null) {
+    
+      engine = TymeacEngine.start(parallelism);
+      ti = engine.tymeac();
+  }
+} // end-method
+
+/**
+ * shut the engine down, the next startServer() starts a new one
+ */
+static void stopServer() {
+  
+  if  (engine != null) {
+    
+      engine.close();
+      engine = null;
+      ti = null;
+  }
+} // end-method
+
 /**
  * Do a nested parallel loop
+ *   May be called repeatedly (benchmark iterations), the Tymeac
+ *   server is only created on the first call.
  */
-private void tymeacLoops () {
+void tymeacLoops () {
   
   /*
    * Tymeac server setup. we're not timing the Tymeac setup-time here.
    */
+  startServer();
   
-  // passed args when starting server   
-  String[] in = {"-threads", // use threads override (default currently 4)
-                 "" + parallelism, // this many threads
-                 "-no",      // no verbose - comment line for start up messages
-                 "-s"        // stand-a-lone mode (no DBMS)
-                };
-  
-  s = new InternalServer(); // internal, no RMI/IIOP etc      
-  ti = s.createServer(in); // start the server with above args
-    
-  // When failed, stop
-  if  (ti == null) { 
-      System.out.println("ti is null, createServer failed");
-      System.exit(0);
-  }
+  // clear any prior run
+  completions.clear();
+  parCount = 0;
+  if  (events != null) Arrays.fill(events, 0);
+  submitToComplete.reset();
+  completeToProcess.reset();
+  startToResult.reset();
+  int[] order = outerOrder();
+  openJournal();
     
   // class data for submitted work
   WaitMAsyncTask myI = new WaitMAsyncTask();  
   Class<? extends Task>  innaC = myI.getClass();  
   
+  // PACKED: all payloads and one parm allocated here, not timed
+  PackedArena arena = (PACKED)? PackedArena.prepare(outerLoop, innerLoop, grain, null) : null;
+  TymeacParm packedTP = (PACKED)? new TymeacParm(innaC, null) : null;
+  
   /*
-   * end of server setup
+   * end of server setup, the deadline counts from here
    */
   
+  Deadline d = Deadline.start(deadlineMillis, outerLoop, innerLoop);
   start = System.nanoTime();
   
   TymeacReturn back = null; // return from server
+  int submitted = 0, processed = 0;
+  peakInFlight = 0;
   
-  // submit all nested tasks
-  for (int i = 0; i < outerLoop; i++) {
+  // submit all nested tasks in ORDER until stopped
+  for (int n = 0; n < outerLoop && !Deadline.stopped(); n++) {
+    
+    int i = (order != null)? order[n] : n;
+    
+    // window full: process completions until a request is free
+    while (window > 0 && submitted - processed >= window && !Deadline.stopped()) {
+      
+      processed += process();
+      
+      if  (submitted - processed < window) break;
+      
+      awaitPost(d);
+    }
+    
+    if  (Deadline.stopped()) break;
     
     // parm for the server: work class, input for that class
-    TymeacParm tp = 
-        new TymeacParm( innaC, 
-                        new WaitMPassClass( i, innerLoop));
+    TymeacParm tp;
+    
+    if  (PACKED) {
+        arena.outers[i].submitted = System.nanoTime();
+        tp = packedTP;
+        tp.setInput(arena.outers[i]);
+    }
+    else
+        tp = new TymeacParm( innaC, 
+                             new WaitMPassClass( i, innerLoop, grain));
         
     try {        
       // call tymeac with an asynchronous request
@@ -197,106 +393,268 @@ private void tymeacLoops () {
         System.exit(1);
     }       
     
+    submitted++;
+    peakInFlight = Math.max(peakInFlight, submitted - processed);
+    
   } // end-for 
   
-  // wait for all outer loop requests to complete
-  //  count decremented in post()
-  while (outerCount > 0) {
-            
-    synchronized (waitM) {  
+  /*
+   * wait for all submitted outer loop requests to complete. Tymeac has no
+   *   cancel for an async request, once stopped the tasks of the requests
+   *   still outstanding complete without working.
+   */
+  while (processed < submitted) {
+                  
+    // process results from each async request completed since the last pass 
+    processed += process();
+    
+    if  (processed == submitted) break;
+    
+    awaitPost(d);
       
-      if  (!awaken) {
+  } // end-while
+  
+  end = System.nanoTime();
+  
+  if  (interrupted) {
+      interrupted = false;
+      Thread.currentThread().interrupt();
+  }  
+  
+  closeJournal();
+  
+} // end-method
+
+/**
+ * park the main thread until a post() or the deadline
+ * @param d deadline of the run
+ */
+private void awaitPost(Deadline d) {
+  
+  /*
+   * park until a post(). 
+   *   The waiter is set before the queue is checked again and post() 
+   *   reads the waiter after it queues, so either we see the completion
+   *   here or post() sees the waiter and unparks us. An unpark before the
+   *   park() makes the park() return at once, no post() is ever missed.  
+   */
+  waiter = Thread.currentThread();
+  
+  if  (completions.isEmpty()) {
     
-          try {
-            waitM.wait();
-          }
-          catch (InterruptedException ignore) {}   
+      // an interrupt stops the run, the tasks complete without working
+      if  (Thread.interrupted()) {
+          interrupted = true;
+          d.cancel();
+      }
       
-      } // endif         
-    } // end-sync
-                  
-    /*
-     * process results from an async request 
-     *   
-     *   There could be many threads doing a post() while the processing
-     *   takes place. Not every post() will release a wait(). Therefore,
-     *   when finished with all processing here, set awaken to false.
-     *   
-     *   If a post() comes in just before the set of awaken to false, 
-     *   we'll miss doing the work now although the results of the async 
-     *   request will not be lost. 
-     *   
-     *     If it is NOT the last request, we'll just need to wait for the next 
-     *     post(), no big thing. 
-     *   
-     *     If it IS the last request or there were multiple post()'s just before
-     *     the set and all async requests are complete, then each post() 
-     *     decrements the count until it is zero, the while-loop will fall thru, 
-     *     and the processing will be handled after the while-loop. 
-     *   
-     *   If the last request finishes here, then it "appears" there could be a 
-     *   never ending wait() since no further async requests will post(). 
-     *   BUT since post() decrements the count, the while-loop will fall thru 
-     *   and we'll never get to the wait().   
-     */
-    process();
+      // with a deadline wake when it passes, it stops the tasks
+      if  (d.expired() || !d.timed())
+          LockSupport.park(this);
+      else
+          LockSupport.parkNanos(this, d.remainingNanos());
+  }
+  
+  waiter = null;
+  
+} // end-method
+
+/**
+ * outer loop numbers in ORDER, null for index order. The cost of outer
+ *   loop number i is the sum of i*j over the inner loop
+ */
+private static int[] outerOrder() {
+  
+  return CostSpliterator.order(ORDER, outerLoop, 
+                               i -> (double) i * innerLoop * (innerLoop - 1) / 2 + innerLoop);
+} // end-method
+
+/**
+ * new journal for a parallel run when asked for, not timed
+ */
+private static void openJournal() {
+  
+  if  (JOURNAL == null) return;
+  
+  try {
+    journal = ResultJournal.create(Paths.get(JOURNAL), outerLoop);
+  }
+  catch (IOException e) {
+    throw new UncheckedIOException(e);
+  }
+} // end-method
+
+/**
+ * clean close of the journal of a run
+ */
+private static void closeJournal() {
+  
+  if  (journal == null) return;
+  
+  try {
+    journal.close();
+    journal = null;
+  }
+  catch (IOException e) {
+    throw new UncheckedIOException(e);
+  }
+} // end-method
+
+/**
+ * The same nested parallel loop through a Flow.Publisher of the async 
+ *   request results. The subscriber sums each result as it is pushed and 
+ *   asks for one more, FLOW_DEMAND results are outstanding at most.
+ *   No static completion state is involved.
+ */
+void flowLoops () {
+  
+  /*
+   * Tymeac server setup. we're not timing the Tymeac setup-time here.
+   */
+  startServer();
+  
+  CountDownLatch done = new CountDownLatch(1);
+  long[] sum = new long[1];
+  Throwable[] failed = new Throwable[1];
+  submitToComplete.reset();
+  completeToProcess.reset();
+  startToResult.reset();
+  int[] order = outerOrder();
+  openJournal();
+  
+  // the deadline counts from here, after the setup
+  Deadline.start(deadlineMillis, outerLoop, innerLoop);
+  start = System.nanoTime();
+  
+  new TymeacPublisher(ti, outerLoop, order, innerLoop, grain)
+      .subscribe(new Flow.Subscriber<TymeacPublisher.Result>() {
+    
+    Flow.Subscription sub;
+    long demand; // requested and not yet delivered, the requests in flight
+    
+    public void onSubscribe(Flow.Subscription s) {
+      sub = s;
+      demand = FLOW_DEMAND;
+      sub.request(FLOW_DEMAND);
+    }
+    
+    public void onNext(TymeacPublisher.Result r) {
+      sum[0] += r.getAccum();
+      demand--;
+      
+      // record only an outer iteration that did work
+      if  (Deadline.ran(r.getOuter())) {
         
-    // will try to wait() until more work
-    awaken = false;  
+          submitToComplete.record(r.getOuter(), r.getCompleted() - r.getSubmitted());
+          completeToProcess.record(r.getOuter(), System.nanoTime() - r.getCompleted());
+          startToResult.record(r.getOuter(), System.nanoTime() - start);
+          
+          if  (journal != null)
+              journal.append(r.getOuter(), 2, r.getAccum(), r.getCompleted() - r.getSubmitted());
+      }
       
+      // stopped: request no more, take the requests in flight as they finish
+      if  (Deadline.stopped()) {
+        
+          if  (demand == 0) {
+              sub.cancel();
+              done.countDown();
+          }
+      }
+      else {
+          demand++;
+          sub.request(1);
+      }
+    }
+    
+    public void onError(Throwable e) {
+      failed[0] = e;
+      done.countDown();
+    }
+    
+    public void onComplete() {
+      done.countDown();
+    }
+  });
+  
+  // an interrupt stops the run, the requests in flight are still taken
+  boolean interrupted = false;
+  
+  while (true) {
+    try {
+      done.await();
+      break;
+    }
+    catch (InterruptedException e) {
+      interrupted = true;
+      Deadline.current().cancel();
+    }
   } // end-while
   
-  /*
-   * process results from any last async request that squeaked in just before
-   *   the set of awaken to false. 
-   */  
-  process();
-    
-  end = System.nanoTime();  
+  if  (interrupted) Thread.currentThread().interrupt();
+  
+  end = System.nanoTime();
+  
+  closeJournal();
+  
+  if  (failed[0] != null) {
+      System.out.println(failed[0].toString());
+      System.exit(1);
+  }
+  
+  parCount = sum[0];
   
 } // end-method
 
 /**
  * process data from each async request in the main thread
- *   only need one pass thru all the events.
- *   if another async request completes after the loop passes the posted event
- *   slot, then we'll get it next pass or the final pass when outerCount = 0.
- *   
- *   If, on the other hand, handling quickly is desireable because the 
- *   async processing is slow (I/O etc.) or the processing here is significant, 
- *   then put the code in a while-loop until a pass thru does not find any 
- *   new events posted. That means an extra full pass thru each time, 
- *   which if outerLoop is large, may be significant.
+ *   Only the requests completed since the last call are in the queue,
+ *   so the cost is per completion, not per outer loop.
+ * @return number of async requests processed
  */
-private void process() {
+private int process() {
+  
+  int count = 0;
+  Completion c;
      
-  // check all outer loop results posted now
-  for (int i = 0; i < outerLoop; i++) {
+  while ((c = completions.poll()) != null) {
           
-    // When there was an event
-    if  (events[i] == 1) {
-      
-        // sum the value passed
-        parCount += outerStore[i];
-        
-        // set event processed
-        events[i] = 2;
+    // sum the value passed
+    parCount += c.accum;
+    count++;
+    
+    // record only an outer iteration that did work
+    if  (!Deadline.ran(c.position)) continue;
+    
+    // set event processed, or journal it
+    if  (journal != null)
+        journal.append(c.position, 2, c.accum, c.completed - c.submitted);
+    else
+        events[c.position] = 2;
+    
+    submitToComplete.record(c.position, c.completed - c.submitted);
+    completeToProcess.record(c.position, System.nanoTime() - c.completed);
+    startToResult.record(c.position, System.nanoTime() - start);
       
-    } // endif      
-  } // end-for  
+  } // end-while  
+  
+  return count;
   
 } // end-method
 
 /**
  * do the work sequentially with the main thread
  */
-private void seqLoops () {
+void seqLoops () {
    
+  seqCount = 0;
+  Deadline.start(deadlineMillis, outerLoop, innerLoop);
   start = System.nanoTime();
   
-  for (int i = 0; i < outerLoop; i++) {
-    for (int j = 0; j < innerLoop; j++) {
+  for (int i = 0; i < outerLoop && !Deadline.stopped(); i++) {
+    for (int j = 0; j < innerLoop && !Deadline.stopped(); j++) {
       seqCount += uselessWork(i, j);
+      Deadline.done(i, j);
     }
   }
   
@@ -306,26 +664,30 @@ private void seqLoops () {
 
 /**
  * deposit async completion result and wake up the main thread
- *   All storing is within sync{} since main/async threads access the
- *   arrays concurrently.
+ *   Lock-free: many Tymeac threads may post at once, each position is
+ *   unique so the arrays need no lock.
  * @param accum
  * @param position
+ * @param submitted nanoTime() of the asyncRequest()
  */
-protected static void post (long accum, int position) {
+protected static void post (long accum, int position, long submitted) {
   
-  synchronized (waitM) {
-     
-    // save outer loop results, each position is unique
-    outerStore[position] = accum;
+  // save outer loop results, each position is unique. With a journal
+  //   the main thread writes the result when it processes it
+  if  (outerStore != null) {
     
-    // set event to 1, each position is unique
-    events[position] = 1;
-    
-    awaken = true;
-    outerCount--;
-    waitM.notify();
+      outerStore[position] = accum;
       
-  } // end-sync
+      // set event to 1, each position is unique
+      events[position] = 1;
+  }
+  
+  completions.offer(new Completion(position, accum, submitted));
+  
+  // wake the main thread when it is parking
+  Thread w = waiter;
+  if  (w != null) LockSupport.unpark(w);
+  
 } // end-method
 
 /**
@@ -335,13 +697,8 @@ protected static void post (long accum, int position) {
  */
 protected static long uselessWork(int i, int j) {
 	
-  @SuppressWarnings("unused")
-  double back = 0.0;
-	long max = i * j;
-	for(int x=0; x < max; x++) {
-		back += Math.sqrt(max);
-	}	
+  KERNEL.run(i, j);
 			
-  return max;
+  return i * j;
 } // end-method
 } // end-class
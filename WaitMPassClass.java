@@ -1,5 +1,7 @@
 package test8;
 
+import java.util.function.LongConsumer;
+
 /**
  * class passed to each async request
  *
@@ -7,14 +9,32 @@ package test8;
 public class WaitMPassClass {
 
   private int i, j; // outer loop, inner loop
+  private int grain = 1; // inner loop indexes per fork, 0 = auto
+  private final long submitted = System.nanoTime(); // created just before asyncRequest()
+  private LongConsumer done; // receives the sum, null to post() to WaitMParallelLoops
   
 public WaitMPassClass(int i, int j) {
   
   this.i = i;
   this.j = j;
 }
+
+public WaitMPassClass(int i, int j, int grain) {
+  
+  this(i, j);
+  this.grain = grain;
+}
+
+public WaitMPassClass(int i, int j, int grain, LongConsumer done) {
+  
+  this(i, j, grain);
+  this.done = done;
+}
   
 public int getI () {return i; };
 public int getJ () {return j; };
+public int getGrain () {return grain; };
+public long getSubmitted () {return submitted; };
+public LongConsumer getDone () {return done; };
 
 } // end-class